@@ -0,0 +1,122 @@
+package overlaymsg;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * @class GeometryBenchmark
+ * @brief Measure the geometry of OverlayMsg for 1 to 1000 items at common screen sizes.
+ * @details The views are generated with a fixed seed, the results only depend on the JVM
+ * and the machine. Run with <tt>gradle jmh</tt> in the @b Benchmark directory.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeometryBenchmark
+{
+	private final static long SEED = 42;
+	private final static int BORDER_SIZE = 3;
+	private final static int BACKGROUND_COLOR = 0xaa000000;
+	private final static int BORDER_COLOR = 0xffffffff;
+
+	@Param({ "1", "10", "100", "1000" })
+	public int holes;
+
+	@Param({ "720x1280", "1080x1920", "1440x2560" })
+	public String screen;
+
+	private int width;
+	private int height;
+	private int offset;
+	// x, y, width, height and shape of each view
+	private int[][] views;
+	private int[][] points;
+	private final ArrayList<OverlayGeometry.Highlight> highlights = new ArrayList<OverlayGeometry.Highlight>();
+	private final OverlayGeometry.HoleGrid holeGrid = new OverlayGeometry.HoleGrid();
+	private final int[] bounds = new int[4];
+	private int[] pixels;
+
+	@Setup
+	public void setup()
+	{
+		String[] size = screen.split("x");
+		width = Integer.parseInt(size[0]);
+		height = Integer.parseInt(size[1]);
+		// Status bar
+		offset = height / 32;
+		Random random = new Random(SEED);
+		views = new int[holes][];
+		for (int i = 0; i < holes; ++i)
+		{
+			int viewWidth = width / 20 + random.nextInt(width / 4);
+			int viewHeight = height / 40 + random.nextInt(height / 8);
+			views[i] = new int[] { random.nextInt(width - viewWidth), offset + random.nextInt(height - offset - viewHeight),
+					viewWidth, viewHeight, i % 2 == 0 ? OverlayGeometry.SHAPE_CIRCLE : OverlayGeometry.SHAPE_RECTANGLE };
+			highlights.add(new OverlayGeometry.Highlight());
+		}
+		computeHighlights();
+		holeGrid.build(highlights, width, height);
+		points = new int[256][];
+		for (int i = 0; i < points.length; ++i)
+			points[i] = new int[] { random.nextInt(width), random.nextInt(height) };
+		pixels = new int[width * height];
+	}
+
+	/**
+	 * @brief Position of the items from the views, like the show methods.
+	 */
+	private void computeHighlights()
+	{
+		for (int i = 0; i < holes; ++i)
+		{
+			int[] view = views[i];
+			if (view[4] == OverlayGeometry.SHAPE_CIRCLE)
+				highlights.get(i).setCircle(view[0], view[1], view[2], view[3], offset);
+			else
+				highlights.get(i).setRect(view[0], view[1], view[2], view[3], offset);
+		}
+	}
+
+	@Benchmark
+	public void highlights(Blackhole blackhole)
+	{
+		computeHighlights();
+		for (int i = 0; i < holes; ++i)
+		{
+			highlights.get(i).getOuterBounds(BORDER_SIZE, bounds);
+			blackhole.consume(bounds[0] + bounds[1] + bounds[2] + bounds[3]);
+		}
+	}
+
+	@Benchmark
+	public void holeGrid(Blackhole blackhole)
+	{
+		holeGrid.build(highlights, width, height);
+		for (int i = 0; i < points.length; ++i)
+			blackhole.consume(holeGrid.find(highlights, points[i][0], points[i][1]));
+	}
+
+	@Benchmark
+	public int[] raster()
+	{
+		OverlayGeometry.rasterize(highlights, width, height, BORDER_SIZE, BACKGROUND_COLOR, BORDER_COLOR, pixels);
+		return pixels;
+	}
+}
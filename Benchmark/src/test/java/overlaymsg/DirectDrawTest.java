@@ -0,0 +1,107 @@
+package overlaymsg;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadow.api.Shadow;
+
+import android.app.Activity;
+import android.graphics.Canvas;
+import android.view.View;
+import android.widget.FrameLayout;
+
+/**
+ * @class DirectDrawTest
+ * @brief Check that the direct render mode and the morphs without a color bitmap draw
+ * without an offscreen layer.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(shadows = { ShadowSaveCanvas.class, ShadowIdentityRenderNode.class })
+public class DirectDrawTest
+{
+	private final static int ROOT_ID = 1;
+	private final static int VIEW_COUNT = 10;
+
+	private Activity activity;
+	private OverlayMsg ovm;
+
+	@Before
+	public void setUp()
+	{
+		activity = Robolectric.setupActivity(Activity.class);
+		activity.setContentView(TestLayouts.createGrid(activity, ROOT_ID, VIEW_COUNT));
+		TestLayouts.layout(activity, ROOT_ID);
+		ovm = new OverlayMsg(activity);
+		ovm.renderMode = OverlayMsg.RENDER_MODE_DIRECT;
+		TestLayouts.pauseMainThread();
+	}
+
+	@Test
+	public void directDrawDoesNotSaveLayer() throws Exception
+	{
+		int[] ids = TestLayouts.spreadIds(ROOT_ID, VIEW_COUNT, VIEW_COUNT);
+		ovm.showTextWithMultiple(ROOT_ID, ids, TestLayouts.alternateShapes(VIEW_COUNT), "Direct", OverlayMsg.POSITION_CENTER, null);
+		TestLayouts.settle();
+		assertEquals(0, drawOverlayView());
+	}
+
+	@Test
+	public void directMorphDoesNotSaveLayer() throws Exception
+	{
+		assertEquals(0, drawMorphFrame());
+	}
+
+	@Test
+	public void maskMorphDoesNotSaveLayer() throws Exception
+	{
+		ovm.renderMode = OverlayMsg.RENDER_MODE_BITMAP;
+		ovm.quality = OverlayMsg.QUALITY_ALPHA_8;
+		assertEquals(0, drawMorphFrame());
+	}
+
+	/**
+	 * @brief Move the holes from a first step of a walkthrough to a second one and draw a frame.
+	 * @return Number of layers saved by the frame.
+	 */
+	private int drawMorphFrame() throws Exception
+	{
+		OverlayMsg.Walkthrough walkthrough = ovm.createWalkthrough(ROOT_ID);
+		walkthrough.addStep(new OverlayMsg.Step(new int[] { ROOT_ID + 1 }, new int[] { OverlayMsg.SHAPE_CIRCLE }, "First", OverlayMsg.POSITION_CENTER));
+		walkthrough.addStep(new OverlayMsg.Step(new int[] { ROOT_ID + VIEW_COUNT }, new int[] { OverlayMsg.SHAPE_RECTANGLE }, "Second", OverlayMsg.POSITION_CENTER));
+		walkthrough.start(null);
+		TestLayouts.settle();
+		FrameLayout root = (FrameLayout)activity.findViewById(ROOT_ID);
+		root.getChildAt(root.getChildCount() - 1).performClick();
+		View overlayView = root.getChildAt(root.getChildCount() - 1);
+		Field morphStartTime = overlayView.getClass().getDeclaredField("morphStartTime");
+		morphStartTime.setAccessible(true);
+		assertNotEquals(0L, morphStartTime.getLong(overlayView));
+		return drawOverlayView();
+	}
+
+	/**
+	 * @brief Draw the overlay view shown over the main layout.
+	 * @return Number of layers saved by the drawing.
+	 * @details The view of Robolectric does not call View::onDraw from View::draw, it is called directly.
+	 */
+	private int drawOverlayView() throws Exception
+	{
+		FrameLayout root = (FrameLayout)activity.findViewById(ROOT_ID);
+		View overlayView = root.getChildAt(root.getChildCount() - 1);
+		Canvas canvas = new Canvas();
+		Method onDraw = overlayView.getClass().getDeclaredMethod("onDraw", Canvas.class);
+		onDraw.setAccessible(true);
+		onDraw.invoke(overlayView, canvas);
+		ShadowSaveCanvas shadowCanvas = Shadow.extract(canvas);
+		return shadowCanvas.getLayerCount();
+	}
+}
@@ -0,0 +1,95 @@
+package overlaymsg;
+
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * @class GeometryAllocationTest
+ * @brief Check that the geometry of a message allocates nothing once the objects are reused.
+ * @details The positions, the borders, the grid of the holes and the raster are computed
+ * again in the same objects for 1, 10 and 100 items. The allocated bytes must not grow
+ * with the number of items.
+ */
+public class GeometryAllocationTest
+{
+	private final static int WIDTH = 1080;
+	private final static int HEIGHT = 1920;
+	private final static int OFFSET = 60;
+	private final static int[] TARGET_COUNTS = { 1, 10, 100 };
+	// Bytes allowed for the measure itself
+	private final static long MAX_BYTES = 256;
+	private final static int PASS_COUNT = 20;
+
+	private final com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+	private final OverlayGeometry.HoleGrid holeGrid = new OverlayGeometry.HoleGrid();
+	private final int[] bounds = new int[4];
+	private final int[] pixels = new int[WIDTH * HEIGHT];
+	private int found;
+
+	@Test
+	public void steadyStateDoesNotAllocate()
+	{
+		long[] allocated = new long[TARGET_COUNTS.length];
+		for (int i = 0; i < TARGET_COUNTS.length; ++i)
+			allocated[i] = measure(TARGET_COUNTS[i]);
+		for (int i = 0; i < TARGET_COUNTS.length; ++i)
+			assertTrue(TARGET_COUNTS[i] + " items allocate " + allocated[i] + " bytes", allocated[i] <= MAX_BYTES);
+		assertTrue("Allocations grow with the items", allocated[TARGET_COUNTS.length - 1] <= allocated[0] + MAX_BYTES);
+	}
+
+	/**
+	 * @brief Smallest allocation of a pass after the first one.
+	 * @param targetCount Number of items.
+	 * @return Allocated bytes.
+	 */
+	private long measure(int targetCount)
+	{
+		Random random = new Random(targetCount);
+		int[][] views = new int[targetCount][];
+		ArrayList<OverlayGeometry.Highlight> highlights = new ArrayList<OverlayGeometry.Highlight>();
+		for (int i = 0; i < targetCount; ++i)
+		{
+			views[i] = new int[] { random.nextInt(WIDTH - 100), OFFSET + random.nextInt(HEIGHT - OFFSET - 100), 20 + random.nextInt(80), 20 + random.nextInt(80) };
+			highlights.add(new OverlayGeometry.Highlight());
+		}
+		long threadId = Thread.currentThread().getId();
+		long smallest = Long.MAX_VALUE;
+		for (int pass = 0; pass < PASS_COUNT; ++pass)
+		{
+			long start = threadBean.getThreadAllocatedBytes(threadId);
+			layout(views, highlights);
+			long bytes = threadBean.getThreadAllocatedBytes(threadId) - start;
+			if (pass > 0)
+				smallest = Math.min(smallest, bytes);
+		}
+		return smallest;
+	}
+
+	/**
+	 * @brief Compute the geometry of a message, like a show.
+	 * @param views Position and size of the views.
+	 * @param highlights Reused items.
+	 */
+	private void layout(int[][] views, ArrayList<OverlayGeometry.Highlight> highlights)
+	{
+		for (int i = 0; i < views.length; ++i)
+		{
+			int[] view = views[i];
+			OverlayGeometry.Highlight highlight = highlights.get(i);
+			if (i % 2 == 0)
+				highlight.setCircle(view[0], view[1], view[2], view[3], OFFSET);
+			else
+				highlight.setRect(view[0], view[1], view[2], view[3], OFFSET);
+			highlight.getOuterBounds(3, bounds);
+		}
+		holeGrid.build(highlights, WIDTH, HEIGHT);
+		for (int i = 0; i < views.length; ++i)
+			found += holeGrid.find(highlights, views[i][0] + 10, views[i][1] - OFFSET + 10);
+		OverlayGeometry.rasterize(highlights, WIDTH, HEIGHT, 3, 0xaa000000, 0xffffffff, pixels);
+	}
+}
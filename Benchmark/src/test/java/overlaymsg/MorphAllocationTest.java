@@ -0,0 +1,117 @@
+package overlaymsg;
+
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import android.app.Activity;
+import android.graphics.Canvas;
+import android.view.View;
+import android.widget.FrameLayout;
+
+/**
+ * @class MorphAllocationTest
+ * @brief Check that the frames of a morph do not allocate for each item.
+ * @details The holes of a walkthrough move from 1, 10 and 50 items to the next views.
+ * Once the first frames are drawn, the allocated bytes of a frame must not grow with the
+ * number of items, in the background bitmap as in the direct render mode.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(shadows = { ShadowSaveCanvas.class, ShadowIdentityRenderNode.class })
+public class MorphAllocationTest
+{
+	private final static int ROOT_ID = 1;
+	private final static int VIEW_COUNT = 100;
+	private final static int[] TARGET_COUNTS = { 1, 10, 50 };
+	// Fewer bytes than one rectangle for each added item
+	private final static long MAX_GROWTH = 16 * (TARGET_COUNTS[TARGET_COUNTS.length - 1] - TARGET_COUNTS[0]);
+	// The morph does not end during the test
+	private final static long MORPH_DURATION = 600000;
+	private final static int WARMUP_COUNT = 20;
+	private final static int FRAME_COUNT = 5;
+
+	private final com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+	@Test
+	public void bitmapMorphDoesNotAllocatePerItem() throws Exception
+	{
+		check(OverlayMsg.RENDER_MODE_BITMAP);
+	}
+
+	@Test
+	public void directMorphDoesNotAllocatePerItem() throws Exception
+	{
+		check(OverlayMsg.RENDER_MODE_DIRECT);
+	}
+
+	/**
+	 * @brief Compare the frames of the morphs with a render mode.
+	 * @param renderMode Render mode of the messages.
+	 */
+	private void check(int renderMode) throws Exception
+	{
+		long[] allocated = new long[TARGET_COUNTS.length];
+		for (int i = 0; i < TARGET_COUNTS.length; ++i)
+			allocated[i] = measure(renderMode, TARGET_COUNTS[i]);
+		StringBuilder report = new StringBuilder();
+		for (int i = 0; i < TARGET_COUNTS.length; ++i)
+			report.append(TARGET_COUNTS[i]).append(" items: ").append(allocated[i]).append(" bytes per frame\n");
+		System.out.print(report);
+		assertTrue("Allocations grow with the items\n" + report, allocated[TARGET_COUNTS.length - 1] - allocated[0] <= MAX_GROWTH);
+	}
+
+	/**
+	 * @brief Smallest allocation of a frame of a morph once the first frames are drawn.
+	 * @param renderMode Render mode of the messages.
+	 * @param targetCount Number of items of each step.
+	 * @return Allocated bytes.
+	 */
+	private long measure(int renderMode, int targetCount) throws Exception
+	{
+		TestLayouts.unpauseMainThread();
+		Activity activity = Robolectric.setupActivity(Activity.class);
+		activity.setContentView(TestLayouts.createGrid(activity, ROOT_ID, VIEW_COUNT));
+		TestLayouts.layout(activity, ROOT_ID);
+		OverlayMsg ovm = new OverlayMsg(activity);
+		ovm.renderMode = renderMode;
+		TestLayouts.pauseMainThread();
+		int[] ids = TestLayouts.spreadIds(ROOT_ID, VIEW_COUNT, targetCount);
+		int[] nextIds = new int[targetCount];
+		for (int i = 0; i < targetCount; ++i)
+			nextIds[i] = ids[i] + 1;
+		int[] shapes = TestLayouts.alternateShapes(targetCount);
+		OverlayMsg.Walkthrough walkthrough = ovm.createWalkthrough(ROOT_ID);
+		walkthrough.setMorphDuration(MORPH_DURATION);
+		walkthrough.addStep(new OverlayMsg.Step(ids, shapes, "First", OverlayMsg.POSITION_CENTER));
+		walkthrough.addStep(new OverlayMsg.Step(nextIds, shapes, "Second", OverlayMsg.POSITION_CENTER));
+		walkthrough.start(null);
+		TestLayouts.settle();
+		FrameLayout root = (FrameLayout)activity.findViewById(ROOT_ID);
+		root.getChildAt(root.getChildCount() - 1).performClick();
+		View overlayView = root.getChildAt(root.getChildCount() - 1);
+		// The view of Robolectric does not call View::onDraw from View::draw
+		Method onDraw = overlayView.getClass().getDeclaredMethod("onDraw", Canvas.class);
+		onDraw.setAccessible(true);
+		Canvas canvas = new Canvas();
+		Object[] onDrawArgs = { canvas };
+		long threadId = Thread.currentThread().getId();
+		long smallest = Long.MAX_VALUE;
+		for (int frame = 0; frame < WARMUP_COUNT + FRAME_COUNT; ++frame)
+		{
+			long start = threadBean.getThreadAllocatedBytes(threadId);
+			overlayView.draw(canvas);
+			onDraw.invoke(overlayView, onDrawArgs);
+			long bytes = threadBean.getThreadAllocatedBytes(threadId) - start;
+			if (frame >= WARMUP_COUNT)
+				smallest = Math.min(smallest, bytes);
+		}
+		return smallest;
+	}
+}
@@ -0,0 +1,213 @@
+package overlaymsg;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import android.app.Activity;
+
+/**
+ * @class ScalingBenchmark
+ * @brief Measure how the show methods scale with the number of views and items.
+ * @details Each case generates a main layout of 10 to 10,000 views on a 1080x1920 screen
+ * and runs several times the whole display of a message: show, fade in, dismiss, fade out
+ * and event. One JSON line per case gives the median time of the show call and of the
+ * whole display, the allocations of the median display and the heap kept after the
+ * dismiss. The lines are written in <tt>build/reports/overlay_msg_scaling.jsonl</tt>.
+ * Run with <tt>gradle scaling</tt> in the @b Benchmark directory, <tt>gradle test</tt>
+ * does not run it.\n
+ * The fades do not wait: the time of the display is the work of the main thread only.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(shadows = { ShadowSaveCanvas.class, ShadowIdentityRenderNode.class }, qualifiers = "w360dp-h640dp-xxhdpi")
+public class ScalingBenchmark
+{
+	private final static int ROOT_ID = 1;
+	private final static int[] VIEW_COUNTS = { 10, 100, 1000, 10000 };
+	private final static int[] TARGET_COUNTS = { 1, 10, 100, 1000 };
+	private final static int WARMUP_COUNT = 3;
+	private final static int REPEAT_COUNT = 7;
+	private final static String REPORT_FILE = "build/reports/overlay_msg_scaling.jsonl";
+
+	private final static int METHOD_CIRCLE = 0;
+	private final static int METHOD_RECT = 1;
+	private final static int METHOD_BIG_RECT = 2;
+	private final static int METHOD_MULTIPLE = 3;
+	private final static String[] METHOD_NAMES = { "showTextWithCircle", "showTextWithRect", "showTextWithBigRect", "showTextWithMultiple" };
+
+	private static FileWriter report;
+
+	private final com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+	private final long[] showTimes = new long[REPEAT_COUNT];
+	private final long[] cycleTimes = new long[REPEAT_COUNT];
+	private final long[] allocSizes = new long[REPEAT_COUNT];
+	private OverlayMsg ovm;
+	private int endedCount;
+
+	@BeforeClass
+	public static void openReport() throws IOException
+	{
+		File file = new File(REPORT_FILE);
+		file.getParentFile().mkdirs();
+		report = new FileWriter(file);
+	}
+
+	@AfterClass
+	public static void closeReport() throws IOException
+	{
+		report.close();
+	}
+
+	@Test
+	public void scaling() throws IOException
+	{
+		for (int views : VIEW_COUNTS)
+		{
+			runCase(METHOD_CIRCLE, views, 1);
+			runCase(METHOD_RECT, views, 1);
+			runCase(METHOD_BIG_RECT, views, 2);
+			for (int targets : TARGET_COUNTS)
+			{
+				if (targets <= views)
+					runCase(METHOD_MULTIPLE, views, targets);
+			}
+		}
+	}
+
+	/**
+	 * @brief Measure a method on a generated layout.
+	 * @param method Measured method, METHOD_CIRCLE to METHOD_MULTIPLE.
+	 * @param viewCount Number of views of the layout.
+	 * @param targetCount Number of items.
+	 * @throws IOException If the report is not written.
+	 */
+	private void runCase(int method, int viewCount, int targetCount) throws IOException
+	{
+		TestLayouts.unpauseMainThread();
+		Activity activity = Robolectric.setupActivity(Activity.class);
+		activity.setContentView(TestLayouts.createGrid(activity, ROOT_ID, viewCount));
+		TestLayouts.layout(activity, ROOT_ID);
+		ovm = new OverlayMsg(activity);
+		TestLayouts.pauseMainThread();
+		int[] ids = TestLayouts.spreadIds(ROOT_ID, viewCount, targetCount);
+		int[] shapes = TestLayouts.alternateShapes(targetCount);
+		OverlayMsg.Event endEvent = new OverlayMsg.Event() {
+			public void event() {
+				++endedCount;
+			}};
+		for (int i = 0; i < WARMUP_COUNT; ++i)
+			runDisplay(method, ids, shapes, endEvent, -1);
+		long baseHeap = getUsedHeap();
+		for (int i = 0; i < REPEAT_COUNT; ++i)
+			runDisplay(method, ids, shapes, endEvent, i);
+		long retainedBytes = getUsedHeap() - baseHeap;
+		activity.finish();
+		writeResult(method, viewCount, targetCount, retainedBytes);
+	}
+
+	/**
+	 * @brief Display a message until the end of its fade out.
+	 * @param method Measured method.
+	 * @param ids Ids of the items.
+	 * @param shapes Shapes of the items.
+	 * @param endEvent Event of the message.
+	 * @param iteration Index of the measure, -1 to only warm up.
+	 */
+	private void runDisplay(int method, int[] ids, int[] shapes, OverlayMsg.Event endEvent, int iteration)
+	{
+		long threadId = Thread.currentThread().getId();
+		int previousEndedCount = endedCount;
+		long startBytes = threadBean.getThreadAllocatedBytes(threadId);
+		long startTime = System.nanoTime();
+		switch (method)
+		{
+		case METHOD_CIRCLE:
+			ovm.showTextWithCircle(ROOT_ID, ids[0], "Benchmark", OverlayMsg.POSITION_CENTER, endEvent);
+			break;
+		case METHOD_RECT:
+			ovm.showTextWithRect(ROOT_ID, ids[0], "Benchmark", OverlayMsg.POSITION_CENTER, endEvent);
+			break;
+		case METHOD_BIG_RECT:
+			ovm.showTextWithBigRect(ROOT_ID, ids[0], ids[ids.length - 1], "Benchmark", OverlayMsg.POSITION_CENTER, endEvent);
+			break;
+		default:
+			ovm.showTextWithMultiple(ROOT_ID, ids, shapes, "Benchmark", OverlayMsg.POSITION_CENTER, endEvent);
+			break;
+		}
+		long showTime = System.nanoTime() - startTime;
+		TestLayouts.settle();
+		ovm.hideCurrentMessage();
+		TestLayouts.settle();
+		long cycleTime = System.nanoTime() - startTime;
+		long allocSize = threadBean.getThreadAllocatedBytes(threadId) - startBytes;
+		assertTrue("The message is not dismissed", endedCount == previousEndedCount + 1);
+		if (iteration < 0)
+			return;
+		showTimes[iteration] = showTime;
+		cycleTimes[iteration] = cycleTime;
+		allocSizes[iteration] = allocSize;
+	}
+
+	/**
+	 * @brief Write the result of a case.
+	 * @param method Measured method.
+	 * @param viewCount Number of views of the layout.
+	 * @param targetCount Number of items.
+	 * @param retainedBytes Heap kept after the dismiss of the messages.
+	 * @throws IOException If the report is not written.
+	 */
+	private void writeResult(int method, int viewCount, int targetCount, long retainedBytes) throws IOException
+	{
+		// The median display gives the allocations
+		long[] sortedCycleTimes = cycleTimes.clone();
+		Arrays.sort(sortedCycleTimes);
+		long medianCycleTime = sortedCycleTimes[REPEAT_COUNT / 2];
+		int medianIndex = 0;
+		for (int i = 0; i < REPEAT_COUNT; ++i)
+		{
+			if (cycleTimes[i] == medianCycleTime)
+				medianIndex = i;
+		}
+		long[] sortedShowTimes = showTimes.clone();
+		Arrays.sort(sortedShowTimes);
+		String line = "{\"method\":\"" + METHOD_NAMES[method] + "\""
+				+ ",\"views\":" + viewCount
+				+ ",\"targets\":" + targetCount
+				+ ",\"showNanosMedian\":" + sortedShowTimes[REPEAT_COUNT / 2]
+				+ ",\"cycleNanosMedian\":" + medianCycleTime
+				+ ",\"cycleNanosMin\":" + sortedCycleTimes[0]
+				+ ",\"cycleNanosMax\":" + sortedCycleTimes[REPEAT_COUNT - 1]
+				+ ",\"allocBytes\":" + allocSizes[medianIndex]
+				+ ",\"retainedBytes\":" + retainedBytes
+				+ ",\"bitmapPoolBytes\":" + OverlayMsg.getMemoryUsage().bitmapPoolBytes + "}";
+		System.out.println(line);
+		report.write(line);
+		report.write('\n');
+		report.flush();
+	}
+
+	/**
+	 * @brief Get the heap used after a garbage collection.
+	 * @return Used bytes.
+	 */
+	private static long getUsedHeap()
+	{
+		Runtime runtime = Runtime.getRuntime();
+		runtime.gc();
+		runtime.runFinalization();
+		runtime.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,24 @@
+package overlaymsg;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowRenderNode;
+
+import android.view.RenderNode;
+
+/**
+ * @class ShadowIdentityRenderNode
+ * @brief Render node without a matrix when it is not transformed.
+ * @details Without it the views of Robolectric always have a matrix and View::getLocationInWindow
+ * allocates for each mapped point, a device does not.
+ */
+@Implements(value = RenderNode.class, isInAndroidSdk = false)
+public class ShadowIdentityRenderNode extends ShadowRenderNode
+{
+	@Implementation
+	public boolean hasIdentityMatrix()
+	{
+		return getRotation() == 0 && getRotationX() == 0 && getRotationY() == 0 && getScaleX() == 1 && getScaleY() == 1
+				&& getTranslationX() == 0 && getTranslationY() == 0;
+	}
+}
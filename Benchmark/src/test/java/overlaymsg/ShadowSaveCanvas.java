@@ -0,0 +1,156 @@
+package overlaymsg;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowCanvas;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+/**
+ * @class ShadowSaveCanvas
+ * @brief Canvas counting its saves and its layers, without drawing history.
+ * @details The canvas of Robolectric always returns 0 from the saves and Canvas::restoreToCount
+ * refuses it, like a device. Its history of the drawings grows at each message and adds
+ * its own allocations to the measured ones.
+ */
+@Implements(Canvas.class)
+public class ShadowSaveCanvas extends ShadowCanvas
+{
+	private int saveCount = 1;
+	private int layerCount;
+
+	@Implementation
+	public int save()
+	{
+		return saveCount++;
+	}
+
+	@Implementation
+	public int save(int saveFlags)
+	{
+		return save();
+	}
+
+	@Implementation
+	public int saveLayer(RectF bounds, Paint paint, int saveFlags)
+	{
+		++layerCount;
+		return save();
+	}
+
+	@Implementation
+	public int saveLayer(float left, float top, float right, float bottom, Paint paint, int saveFlags)
+	{
+		++layerCount;
+		return save();
+	}
+
+	@Implementation
+	public int saveLayerAlpha(float left, float top, float right, float bottom, int alpha, int saveFlags)
+	{
+		++layerCount;
+		return save();
+	}
+
+	@Implementation
+	@Override
+	public void restore()
+	{
+		if (saveCount > 1)
+			--saveCount;
+	}
+
+	@Implementation
+	public void restoreToCount(int count)
+	{
+		if (count < 1)
+			throw new IllegalArgumentException("Underflow in restoreToCount");
+		saveCount = Math.min(saveCount, count);
+	}
+
+	@Implementation
+	public int getSaveCount()
+	{
+		return saveCount;
+	}
+
+	/**
+	 * @brief Get the number of layers saved since the creation of the canvas.
+	 * @return Number of layers.
+	 */
+	public int getLayerCount()
+	{
+		return layerCount;
+	}
+
+	@Override
+	public void appendDescription(String description)
+	{
+	}
+
+	@Implementation
+	@Override
+	public void drawPath(Path path, Paint paint)
+	{
+	}
+
+	@Implementation
+	@Override
+	public void drawColor(int color)
+	{
+	}
+
+	@Implementation
+	@Override
+	public void drawPaint(Paint paint)
+	{
+	}
+
+	@Implementation
+	@Override
+	public void drawRect(float left, float top, float right, float bottom, Paint paint)
+	{
+	}
+
+	@Implementation
+	@Override
+	public void drawCircle(float cx, float cy, float radius, Paint paint)
+	{
+	}
+
+	@Implementation
+	@Override
+	public void drawText(String text, float x, float y, Paint paint)
+	{
+	}
+
+	@Implementation
+	@Override
+	public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint)
+	{
+	}
+
+	@Implementation
+	@Override
+	public void drawBitmap(Bitmap bitmap, Rect src, Rect dst, Paint paint)
+	{
+	}
+
+	@Implementation
+	@Override
+	public void drawBitmap(Bitmap bitmap, Rect src, RectF dst, Paint paint)
+	{
+	}
+
+	@Implementation
+	@Override
+	public void drawBitmap(Bitmap bitmap, Matrix matrix, Paint paint)
+	{
+	}
+}
@@ -0,0 +1,86 @@
+package overlaymsg;
+
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import android.app.Activity;
+
+/**
+ * @class ShowAllocationTest
+ * @brief Check that showing a message does not allocate for each item.
+ * @details OverlayMsg::showTextWithMultiple is called with 1, 10 and 100 items once the
+ * layouts, the bitmaps and the items are reused. The allocated bytes of a show must not
+ * grow with the number of items.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(shadows = { ShadowSaveCanvas.class, ShadowIdentityRenderNode.class })
+public class ShowAllocationTest
+{
+	private final static int ROOT_ID = 1;
+	private final static int VIEW_COUNT = 100;
+	private final static int[] TARGET_COUNTS = { 1, 10, 100 };
+	// Fewer bytes than one item for each added item
+	private final static long MAX_GROWTH = 16 * (TARGET_COUNTS[TARGET_COUNTS.length - 1] - TARGET_COUNTS[0]);
+	private final static int WARMUP_COUNT = 5;
+	private final static int PASS_COUNT = 5;
+
+	private final com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+	private Activity activity;
+	private OverlayMsg ovm;
+
+	@Before
+	public void setUp()
+	{
+		activity = Robolectric.setupActivity(Activity.class);
+		activity.setContentView(TestLayouts.createGrid(activity, ROOT_ID, VIEW_COUNT));
+		TestLayouts.layout(activity, ROOT_ID);
+		ovm = new OverlayMsg(activity);
+		TestLayouts.pauseMainThread();
+	}
+
+	@Test
+	public void showDoesNotAllocatePerItem()
+	{
+		long[] allocated = new long[TARGET_COUNTS.length];
+		for (int i = 0; i < TARGET_COUNTS.length; ++i)
+			allocated[i] = measure(TARGET_COUNTS[i]);
+		StringBuilder report = new StringBuilder();
+		for (int i = 0; i < TARGET_COUNTS.length; ++i)
+			report.append(TARGET_COUNTS[i]).append(" items: ").append(allocated[i]).append(" bytes\n");
+		System.out.print(report);
+		assertTrue("Allocations grow with the items\n" + report, allocated[TARGET_COUNTS.length - 1] - allocated[0] <= MAX_GROWTH);
+	}
+
+	/**
+	 * @brief Smallest allocation of a show once the objects are reused.
+	 * @param targetCount Number of items.
+	 * @return Allocated bytes.
+	 */
+	private long measure(int targetCount)
+	{
+		int[] ids = TestLayouts.spreadIds(ROOT_ID, VIEW_COUNT, targetCount);
+		int[] shapes = TestLayouts.alternateShapes(targetCount);
+		long threadId = Thread.currentThread().getId();
+		long smallest = Long.MAX_VALUE;
+		for (int pass = 0; pass < WARMUP_COUNT + PASS_COUNT; ++pass)
+		{
+			long start = threadBean.getThreadAllocatedBytes(threadId);
+			ovm.showTextWithMultiple(ROOT_ID, ids, shapes, "Allocations", OverlayMsg.POSITION_CENTER, null);
+			long bytes = threadBean.getThreadAllocatedBytes(threadId) - start;
+			if (pass >= WARMUP_COUNT)
+				smallest = Math.min(smallest, bytes);
+			TestLayouts.settle();
+			ovm.hideCurrentMessage();
+			TestLayouts.settle();
+		}
+		return smallest;
+	}
+}
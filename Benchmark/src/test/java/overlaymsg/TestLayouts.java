@@ -0,0 +1,117 @@
+package overlaymsg;
+
+import java.util.concurrent.TimeUnit;
+
+import org.robolectric.shadows.ShadowLooper;
+
+import android.app.Activity;
+import android.util.DisplayMetrics;
+import android.view.View;
+import android.widget.FrameLayout;
+
+/**
+ * @class TestLayouts
+ * @brief Main layouts generated for the tests.
+ */
+final class TestLayouts
+{
+	/** @brief Delay ending the fades, in milliseconds. */
+	private final static long SETTLE_DELAY = 400;
+
+	private TestLayouts()
+	{
+	}
+
+	/**
+	 * @brief Create small views in a grid covering the screen.
+	 * @param activity Activity of the views.
+	 * @param rootId Id of the main layout, the views have the next ids.
+	 * @param viewCount Number of views.
+	 * @return Main layout.
+	 */
+	static FrameLayout createGrid(Activity activity, int rootId, int viewCount)
+	{
+		FrameLayout root = new FrameLayout(activity);
+		root.setId(rootId);
+		int columns = (int)Math.ceil(Math.sqrt(viewCount));
+		int size = Math.max(1, activity.getResources().getDisplayMetrics().widthPixels / columns);
+		for (int i = 0; i < viewCount; ++i)
+		{
+			View view = new View(activity);
+			view.setId(rootId + 1 + i);
+			FrameLayout.LayoutParams layoutParams = new FrameLayout.LayoutParams(size, size);
+			layoutParams.leftMargin = (i % columns) * size;
+			layoutParams.topMargin = (i / columns) * size;
+			root.addView(view, layoutParams);
+		}
+		return root;
+	}
+
+	/**
+	 * @brief Lay out the main layout at the size of the screen.
+	 * @param activity Activity showing the main layout.
+	 * @param rootId Id of the main layout.
+	 */
+	static void layout(Activity activity, int rootId)
+	{
+		View root = activity.findViewById(rootId);
+		DisplayMetrics displayMetrics = activity.getResources().getDisplayMetrics();
+		root.measure(View.MeasureSpec.makeMeasureSpec(displayMetrics.widthPixels, View.MeasureSpec.EXACTLY),
+				View.MeasureSpec.makeMeasureSpec(displayMetrics.heightPixels, View.MeasureSpec.EXACTLY));
+		root.layout(0, 0, displayMetrics.widthPixels, displayMetrics.heightPixels);
+	}
+
+	/**
+	 * @brief Run the tasks of the main thread only when the tests let the time pass.
+	 * @details Otherwise Robolectric runs a posted task at once, before the end of the
+	 * calling method: a fade out would start before its listener is set.
+	 */
+	static void pauseMainThread()
+	{
+		ShadowLooper.pauseMainLooper();
+	}
+
+	/**
+	 * @brief Run again the tasks of the main thread at once, to create an activity.
+	 */
+	static void unpauseMainThread()
+	{
+		ShadowLooper.unPauseMainLooper();
+	}
+
+	/**
+	 * @brief Let the layouts and the fades of the main thread end.
+	 */
+	static void settle()
+	{
+		ShadowLooper.idleMainLooper(SETTLE_DELAY, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @brief Ids of items spread over the whole layout.
+	 * @param rootId Id of the main layout.
+	 * @param viewCount Number of views of the layout.
+	 * @param targetCount Number of items.
+	 * @return Ids of the items.
+	 */
+	static int[] spreadIds(int rootId, int viewCount, int targetCount)
+	{
+		int[] ids = new int[targetCount];
+		for (int i = 0; i < targetCount; ++i)
+			ids[i] = rootId + 1 + (int)((long)i * viewCount / targetCount);
+		return ids;
+	}
+
+	/**
+	 * @brief Circles and rectangles one after the other.
+	 * @param targetCount Number of items.
+	 * @return Shapes of the items.
+	 */
+	static int[] alternateShapes(int targetCount)
+	{
+		int[] shapes = new int[targetCount];
+		for (int i = 0; i < targetCount; ++i)
+			shapes[i] = i % 2 == 0 ? OverlayMsg.SHAPE_CIRCLE : OverlayMsg.SHAPE_RECTANGLE;
+		return shapes;
+	}
+}
@@ -0,0 +1,427 @@
+/**
+ * @file OverlayGeometry.java
+ * @brief Geometry of the surrounded items, without Android classes.
+ * @author Sylvain DANGIN
+ * @version 1.0
+ * @date 5/29/2014
+ * @copyright Copyright (c) 2014, Sylvain DANGIN\n
+ * @par
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+ * @par
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice, 
+this list of conditions and the followingdisclaimer in the documentation and/or
+other materials provided with the distribution.
+ * @par
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL 
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE 
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * @class OverlayGeometry
+ * @brief Geometry of the surrounded items.
+ * @details Only integer computations and no Android class: the positions of the views,
+ * the circle radius, the offset of the main layout, the borders and the hit-testing of
+ * the holes can be used and measured on a plain JVM (see the @b Benchmark directory).
+ */
+public final class OverlayGeometry
+{
+	/** @brief Shape circle. */
+	public final static int SHAPE_CIRCLE = 0;
+	/** @brief Shape rectangle. */
+	public final static int SHAPE_RECTANGLE = 1;
+
+	/**
+	 * @brief No instance.
+	 */
+	private OverlayGeometry()
+	{
+	}
+
+	/**
+	 * @class Highlight
+	 * @brief Geometry of a surrounded item.
+	 * @details Coordinates are relative to the main layout and describe the hole,
+	 * the border is drawn around it.
+	 */
+	public static class Highlight
+	{
+		/** @brief Shape of the hole. */
+		int shape;
+		/** @brief Left side of the hole. */
+		int left;
+		/** @brief Top side of the hole. */
+		int top;
+		/** @brief Right side of the hole. */
+		int right;
+		/** @brief Bottom side of the hole. */
+		int bottom;
+
+		/**
+		 * @brief Set a circle surrounding a view.
+		 * @param x View horizontal position in the window.
+		 * @param y View vertical position in the window.
+		 * @param width View width.
+		 * @param height View height.
+		 * @param offset Vertical position of the main layout in the window.
+		 * @details The radius is the half of the biggest side of the view.
+		 */
+		public void setCircle(int x, int y, int width, int height, int offset)
+		{
+			int posX = width / 2 + x;
+			int posY = height / 2 + y - offset;
+			int radius;
+			if (width < height)
+				radius = height / 2;
+			else
+				radius = width / 2;
+			shape = SHAPE_CIRCLE;
+			left = posX - radius;
+			top = posY - radius;
+			right = posX + radius;
+			bottom = posY + radius;
+		}
+
+		/**
+		 * @brief Set a rectangle surrounding a view.
+		 * @param x View horizontal position in the window.
+		 * @param y View vertical position in the window.
+		 * @param width View width.
+		 * @param height View height.
+		 * @param offset Vertical position of the main layout in the window.
+		 */
+		public void setRect(int x, int y, int width, int height, int offset)
+		{
+			shape = SHAPE_RECTANGLE;
+			left = x;
+			top = y - offset;
+			right = x + width;
+			bottom = y - offset + height;
+		}
+
+		/**
+		 * @brief Set a rectangle surrounding two views.
+		 * @param x1 First view horizontal position in the window.
+		 * @param y1 First view vertical position in the window.
+		 * @param x2 Second view horizontal position in the window.
+		 * @param y2 Second view vertical position in the window.
+		 * @param width2 Second view width.
+		 * @param height2 Second view height.
+		 * @param offset Vertical position of the main layout in the window.
+		 * @details The rectangle goes from the top left corner of the first view
+		 * to the bottom right corner of the second view.
+		 */
+		public void setBigRect(int x1, int y1, int x2, int y2, int width2, int height2, int offset)
+		{
+			shape = SHAPE_RECTANGLE;
+			left = x1;
+			top = y1 - offset;
+			right = x2 + width2;
+			bottom = y2 - offset + height2;
+		}
+
+		/**
+		 * @brief Compare the geometry with another item.
+		 * @param other Item to compare.
+		 * @return True if both items have the same shape and bounds.
+		 */
+		public boolean sameAs(Highlight other)
+		{
+			return shape == other.shape && left == other.left && top == other.top && right == other.right && bottom == other.bottom;
+		}
+
+		/**
+		 * @brief Copy the geometry of another item.
+		 * @param other Item to copy.
+		 */
+		public void set(Highlight other)
+		{
+			shape = other.shape;
+			left = other.left;
+			top = other.top;
+			right = other.right;
+			bottom = other.bottom;
+		}
+
+		/**
+		 * @brief Get the horizontal center of the hole.
+		 * @return Horizontal position.
+		 */
+		public int centerX()
+		{
+			return (left + right) / 2;
+		}
+
+		/**
+		 * @brief Get the vertical center of the hole.
+		 * @return Vertical position.
+		 */
+		public int centerY()
+		{
+			return (top + bottom) / 2;
+		}
+
+		/**
+		 * @brief Get the radius of a circle hole.
+		 * @return Radius.
+		 */
+		public int radius()
+		{
+			return (right - left) / 2;
+		}
+
+		/**
+		 * @brief Get the bounds of the item with its border.
+		 * @param borderSize Border size in pixel.
+		 * @param bounds Array of 4 values filled with left, top, right and bottom.
+		 */
+		public void getOuterBounds(int borderSize, int[] bounds)
+		{
+			bounds[0] = left - borderSize;
+			bounds[1] = top - borderSize;
+			bounds[2] = right + borderSize;
+			bounds[3] = bottom + borderSize;
+		}
+
+		/**
+		 * @brief Set the geometry between two items.
+		 * @param from Item at the start.
+		 * @param to Item at the end.
+		 * @param fraction Progress from 0 to 1.
+		 * @details The shape changes at the middle of the progress.
+		 */
+		public void interpolate(Highlight from, Highlight to, float fraction)
+		{
+			shape = fraction < 0.5f ? from.shape : to.shape;
+			left = from.left + Math.round((to.left - from.left) * fraction);
+			top = from.top + Math.round((to.top - from.top) * fraction);
+			right = from.right + Math.round((to.right - from.right) * fraction);
+			bottom = from.bottom + Math.round((to.bottom - from.bottom) * fraction);
+		}
+
+		/**
+		 * @brief Set the geometry of an item scaled around its center.
+		 * @param other Item to scale.
+		 * @param fraction Scale from 0 to 1.
+		 */
+		public void scale(Highlight other, float fraction)
+		{
+			int halfWidth = Math.round((other.right - other.left) * fraction / 2);
+			int halfHeight = Math.round((other.bottom - other.top) * fraction / 2);
+			shape = other.shape;
+			left = other.centerX() - halfWidth;
+			top = other.centerY() - halfHeight;
+			right = other.centerX() + halfWidth;
+			bottom = other.centerY() + halfHeight;
+		}
+
+		/**
+		 * @brief Check if a point is in the hole.
+		 * @param x Horizontal position relative to the main layout.
+		 * @param y Vertical position relative to the main layout.
+		 * @return True if the point is in the circle or the rectangle.
+		 */
+		public boolean contains(int x, int y)
+		{
+			if (x < left || x >= right || y < top || y >= bottom)
+				return false;
+			if (shape != SHAPE_CIRCLE)
+				return true;
+			long dx = x - centerX();
+			long dy = y - centerY();
+			long radius = radius();
+			return dx * dx + dy * dy <= radius * radius;
+		}
+	}
+
+	/**
+	 * @class HoleGrid
+	 * @brief Find the hole under a point.
+	 * @details The main layout is divided in a grid of cells, each cell lists the holes
+	 * whose bounds cross it. A point is only tested against the holes of its cell, so the
+	 * cost of a touch does not grow with the number of holes spread on the screen. The
+	 * arrays are reused when the grid is built again.
+	 */
+	public static class HoleGrid
+	{
+		/** @brief Number of columns and rows of the grid. */
+		private final static int GRID_SIZE = 8;
+		/** @brief Start of the holes of each cell in cellHoles, the last value is the end. */
+		private final int[] cellStart = new int[GRID_SIZE * GRID_SIZE + 1];
+		/** @brief Hole indexes of all the cells. */
+		private int[] cellHoles = new int[16];
+		/** @brief Width of a cell. */
+		private int cellWidth;
+		/** @brief Height of a cell. */
+		private int cellHeight;
+
+		/**
+		 * @brief Build the grid.
+		 * @param highlights Holes.
+		 * @param width Width of the main layout.
+		 * @param height Height of the main layout.
+		 */
+		public void build(ArrayList<Highlight> highlights, int width, int height)
+		{
+			cellWidth = Math.max(1, (width + GRID_SIZE - 1) / GRID_SIZE);
+			cellHeight = Math.max(1, (height + GRID_SIZE - 1) / GRID_SIZE);
+			Arrays.fill(cellStart, 0);
+			// Count the holes of each cell, shifted by one cell
+			for (int i = 0; i < highlights.size(); ++i)
+			{
+				Highlight highlight = highlights.get(i);
+				int lastColumn = getColumn(highlight.right - 1);
+				int lastRow = getRow(highlight.bottom - 1);
+				for (int row = getRow(highlight.top); row <= lastRow; ++row)
+					for (int column = getColumn(highlight.left); column <= lastColumn; ++column)
+						++cellStart[row * GRID_SIZE + column + 1];
+			}
+			for (int i = 1; i < cellStart.length; ++i)
+				cellStart[i] += cellStart[i - 1];
+			int total = cellStart[cellStart.length - 1];
+			if (cellHoles.length < total)
+				cellHoles = new int[total];
+			// Fill the cells, cellStart is used as the write position of each cell
+			for (int i = 0; i < highlights.size(); ++i)
+			{
+				Highlight highlight = highlights.get(i);
+				int lastColumn = getColumn(highlight.right - 1);
+				int lastRow = getRow(highlight.bottom - 1);
+				for (int row = getRow(highlight.top); row <= lastRow; ++row)
+					for (int column = getColumn(highlight.left); column <= lastColumn; ++column)
+						cellHoles[cellStart[row * GRID_SIZE + column]++] = i;
+			}
+			// The write positions are now the starts of the next cells
+			for (int i = cellStart.length - 1; i > 0; --i)
+				cellStart[i] = cellStart[i - 1];
+			cellStart[0] = 0;
+		}
+
+		/**
+		 * @brief Find the hole under a point.
+		 * @param highlights Holes given to HoleGrid::build.
+		 * @param x Horizontal position relative to the main layout.
+		 * @param y Vertical position relative to the main layout.
+		 * @return Index of the hole, -1 if the point is not in a hole.
+		 */
+		public int find(ArrayList<Highlight> highlights, int x, int y)
+		{
+			int cell = getRow(y) * GRID_SIZE + getColumn(x);
+			for (int i = cellStart[cell]; i < cellStart[cell + 1]; ++i)
+			{
+				int index = cellHoles[i];
+				if (highlights.get(index).contains(x, y))
+					return index;
+			}
+			return -1;
+		}
+
+		/**
+		 * @brief Get the column of a position, clamped to the grid.
+		 * @param x Horizontal position.
+		 * @return Column index.
+		 */
+		private int getColumn(int x)
+		{
+			return Math.min(GRID_SIZE - 1, Math.max(0, x / cellWidth));
+		}
+
+		/**
+		 * @brief Get the row of a position, clamped to the grid.
+		 * @param y Vertical position.
+		 * @return Row index.
+		 */
+		private int getRow(int y)
+		{
+			return Math.min(GRID_SIZE - 1, Math.max(0, y / cellHeight));
+		}
+	}
+
+	/**
+	 * @brief Draw the reference background in an ARGB array.
+	 * @param highlights Surrounded items.
+	 * @param width Width of the background.
+	 * @param height Height of the background.
+	 * @param borderSize Border size in pixel.
+	 * @param backgroundColor Background color.
+	 * @param borderColor Border color.
+	 * @param pixels Destination, at least @b width * @b height values, row by row.
+	 * @details Same result as the Android renderer without anti alias: the borders of
+	 * all the items are drawn first, then all the holes are cleared. Used to check and
+	 * measure the geometry on a plain JVM.
+	 */
+	public static void rasterize(ArrayList<Highlight> highlights, int width, int height, int borderSize, int backgroundColor, int borderColor, int[] pixels)
+	{
+		Arrays.fill(pixels, 0, width * height, backgroundColor);
+		if (borderSize > 0)
+		{
+			for (int i = 0; i < highlights.size(); ++i)
+				fillShape(highlights.get(i), borderSize, borderColor, width, height, pixels);
+		}
+		for (int i = 0; i < highlights.size(); ++i)
+			fillShape(highlights.get(i), 0, 0x00000000, width, height, pixels);
+	}
+
+	/**
+	 * @brief Fill the shape of an item.
+	 * @param highlight Item to fill.
+	 * @param grow Size added around the hole.
+	 * @param color Fill color.
+	 * @param width Width of the background.
+	 * @param height Height of the background.
+	 * @param pixels Destination, row by row.
+	 */
+	private static void fillShape(Highlight highlight, int grow, int color, int width, int height, int[] pixels)
+	{
+		if (highlight.shape == SHAPE_CIRCLE)
+		{
+			int centerX = highlight.centerX();
+			int centerY = highlight.centerY();
+			long radius = highlight.radius() + grow;
+			int firstRow = (int)Math.max(0, centerY - radius);
+			int lastRow = (int)Math.min(height - 1, centerY + radius);
+			for (int y = firstRow; y <= lastRow; ++y)
+			{
+				long dy = y - centerY;
+				int halfSpan = (int)Math.sqrt(radius * radius - dy * dy);
+				fillRow(pixels, y * width, Math.max(0, centerX - halfSpan), Math.min(width, centerX + halfSpan + 1), color);
+			}
+		}
+		else
+		{
+			int left = Math.max(0, highlight.left - grow);
+			int right = Math.min(width, highlight.right + grow);
+			int lastRow = Math.min(height, highlight.bottom + grow);
+			for (int y = Math.max(0, highlight.top - grow); y < lastRow; ++y)
+				fillRow(pixels, y * width, left, right, color);
+		}
+	}
+
+	/**
+	 * @brief Fill a part of a row.
+	 * @param pixels Destination.
+	 * @param rowStart Index of the first pixel of the row.
+	 * @param start First column.
+	 * @param end Column after the last one.
+	 * @param color Fill color.
+	 */
+	private static void fillRow(int[] pixels, int rowStart, int start, int end, int color)
+	{
+		if (start < end)
+			Arrays.fill(pixels, rowStart + start, rowStart + end, color);
+	}
+}
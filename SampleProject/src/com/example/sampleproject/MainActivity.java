@@ -58,7 +58,7 @@ public class MainActivity extends Activity
 		OverlayMsg ovm = new OverlayMsg(this);
 		// Around 2 items with special font
 		// Font found here : http://www.dafont.com/fr/alex-toth.font?l[]=10
-		Typeface typeface = Typeface.createFromAsset(getAssets(), "fonts/alex-toth.ttf");
+		Typeface typeface = OverlayMsg.Style.getTypeface(this, "fonts/alex-toth.ttf");
 		ovm.textFont = typeface;
 		ovm.textSize = convertSpToPixel(50);
 		ovm.showTextWithBigRect(R.id.globalLayout, R.id.checkbox1, R.id.checkbox2, "A big box", OverlayMsg.POSITION_TOP, null);
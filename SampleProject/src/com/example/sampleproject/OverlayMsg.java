@@ -29,20 +29,47 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 package com.example.sampleproject;
 
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
 import android.annotation.SuppressLint;
 import android.app.Activity;
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.ColorFilter;
 import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PixelFormat;
 import android.graphics.PorterDuff;
 import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
+import android.graphics.Region;
 import android.graphics.Typeface;
-import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.util.DisplayMetrics;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+import android.util.TypedValue;
+import android.view.Choreographer;
 import android.view.Gravity;
+import android.view.MotionEvent;
 import android.view.View;
 import android.view.View.OnClickListener;
 import android.view.ViewGroup;
+import android.view.ViewParent;
+import android.view.ViewPropertyAnimator;
+import android.view.ViewTreeObserver;
 import android.view.animation.AlphaAnimation;
 import android.view.animation.Animation;
 import android.view.animation.Animation.AnimationListener;
@@ -50,7 +77,35 @@ import android.widget.FrameLayout;
 import android.widget.FrameLayout.LayoutParams;
 import android.widget.LinearLayout;
 import android.widget.RelativeLayout;
-import android.widget.TextView;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * @class OverlayMsg
@@ -68,542 +123,5031 @@ public class OverlayMsg
 		public void event();
 	}
 
-	/** @brief Top position constant used for placement of text. */
-	public final static int POSITION_TOP = 0;
-	/** @brief Center position constant used for placement of text. */
-	public final static int POSITION_CENTER = 1;
-	/** @brief Bottom position constant used for placement of text. */
-	public final static int POSITION_BOTTOM = 2;
-	/** @brief Shape circle for multiple items. */
-	public final static int SHAPE_CIRCLE = 0;
-	/** @brief Shape rectangle for multiple items. */
-	public final static int SHAPE_RECTANGLE = 1;
-	/** @brief Application activity. */
-	private Activity activity;
-	/** 
-	 * @brief Border size in pixel.
-	 * @details The default value is defined by @b R.dimen.overlay_msg_default_border_size. 
-	 */
-	public int borderSize;
-	/** 
-	 * @brief Text size in pixel.
-	 * @details The default value is defined by @b R.dimen.overlay_msg_default_text_size. 
-	 */
-	public int textSize;
-	/** 
-	 * @brief Text margin in pixel.
-	 * @details The default value is defined by @b R.dimen.overlay_msg_default_text_margin. 
-	 */
-	public int textMargin;
-	/**
-	 * @brief Text color
-	 * @details The default value is defined by @b R.color.overlay_msg_default_text_color.
-	 */
-	public int textColor;
-	/**
-	 * @brief Text background color
-	 * @details The default value is defined by @b R.color.overlay_msg_default_text_background_color.
-	 */
-	public int textBackgroundColor;
-	/**
-	 * @brief Background color
-	 * @details The default value is defined by @b R.color.overlay_msg_default_background_color.
-	 */
-	public int backgroundColor;
-	/**
-	 * @brief Border color
-	 * @details The default value is defined by @b R.color.overlay_msg_default_border_color.
-	 */
-	public int borderColor;
-	/**
-	 * @brief Use anti alias.
-	 * @details The default value is defined by @b R.bool.overlay_msg_default_use_antialias.
-	 */
-	public boolean antiAlias;
-	/**
-	 * @brief Show TextView background
-	 * @details The default value is defined by @b R.bool.overlay_msg_default_show_text_background.
-	 */
-	public boolean showTextBackground;
-	/**
-	 * @brief TextView font
-	 */
-	public Typeface textFont;
-	/**
-	 * @brief Show a message under text.
-	 */
-	public boolean showPressToContinue;
 	/**
-	 * @brief Press to continue text size.
-	 */
-	public int pressToContinueTextSize;
-	/**
-	 * @brief State at true if message is currently showed.
-	 */
-	private boolean currentlyShowed;
-	/**
-	 * @brief Current message layout.
-	 */
-	private RelativeLayout currentLayout;
-	
-	/**
-	 * @brief Class constructor.
-	 * @param applicationActivity Application activity
-	 * @details Initializes all default values.
+	 * @interface ShowListener
+	 * @brief Interface used by OverlayMsg when a message is displayed.
 	 */
-	public OverlayMsg(Activity applicationActivity)
+	public interface ShowListener
 	{
-		activity = applicationActivity;
-		borderSize = activity.getResources().getDimensionPixelSize(R.dimen.overlay_msg_default_border_size);
-		textSize = activity.getResources().getDimensionPixelSize(R.dimen.overlay_msg_default_text_size);
-		textMargin = activity.getResources().getDimensionPixelSize(R.dimen.overlay_msg_default_text_margin);
-		textColor = activity.getResources().getColor(R.color.overlay_msg_default_text_color);
-		textBackgroundColor = activity.getResources().getColor(R.color.overlay_msg_default_text_background_color);
-		backgroundColor = activity.getResources().getColor(R.color.overlay_msg_default_background_color);
-		borderColor = activity.getResources().getColor(R.color.overlay_msg_default_border_color);
-		antiAlias = activity.getResources().getBoolean(R.bool.overlay_msg_default_use_antialias);
-		showTextBackground = activity.getResources().getBoolean(R.bool.overlay_msg_default_show_text_background);
-		showPressToContinue = activity.getResources().getBoolean(R.bool.overlay_msg_default_press_to_continue);
-		pressToContinueTextSize = activity.getResources().getDimensionPixelSize(R.dimen.overlay_msg_default_press_text_size);
-		textFont = null;
+		/** @brief Called when the layout is drawn for the first time. */
+		public void onShown();
 	}
-	
+
 	/**
-	 * @brief Displays a message with an item surrounded by a circle.
-	 * @param globalLayoutId Id of the main layout.
-	 * @param viewToSurround View that will be surrounded.
-	 * @param msg Message to show.
-	 * @param position Position of the text on the screen.
-	 * @param overlayEvent Event called at the end of the display.
-	 * @details 
-	 * The @b globalLayoutId parameter must refer to a FrameLayout.\n
-	 * The @b position parameter is defined by : 
-	 * - OverlayMsg::POSITION_TOP,
-	 * - OverlayMsg::POSITION_CENTER,
-	 * - OverlayMsg::POSITION_BOTTOM.
+	 * @interface TransitionListener
+	 * @brief Interface used by OverlayMsg to report the fades.
 	 */
-	public void showTextWithCircle(int globalLayoutId, int viewToSurround, String msg, int position, final OverlayMsg.Event overlayEvent)
+	public interface TransitionListener
 	{
-		int tempViewId[] = new int[1];
-		int tempShape[] = new int[1];
-		tempViewId[0] = viewToSurround;
-		tempShape[0] = SHAPE_CIRCLE;
-		showTextWithMultiple(globalLayoutId, tempViewId, tempShape, msg, position, overlayEvent);
+		/**
+		 * @brief Called at the end of a fade that was not interrupted.
+		 * @param fadeIn True for a fade in, false for a fade out.
+		 * @param duration Duration of the fade in nanoseconds.
+		 * @param frameCount Number of frames drawn during the fade, -1 before Android 4.1.
+		 * @param droppedFrames Number of frames missed during the fade, -1 before Android 4.1.
+		 */
+		public void onTransitionEnd(boolean fadeIn, long duration, int frameCount, int droppedFrames);
 	}
-	
+
 	/**
-	 * @brief Displays a message with an item surrounded by a rectangle.
-	 * @param globalLayoutId Id of the main layout.
-	 * @param viewToSurround View that will be surrounded.
-	 * @param msg Message to show.
-	 * @param position Position of the text on the screen.
-	 * @param overlayEvent Event called at the end of the display.
-	 * @details 
-	 * The @b globalLayoutId parameter must refer to a FrameLayout.\n
-	 * The @b position parameter is defined by : 
-	 * - OverlayMsg::POSITION_TOP,
-	 * - OverlayMsg::POSITION_CENTER,
-	 * - OverlayMsg::POSITION_BOTTOM.
+	 * @interface MetricsListener
+	 * @brief Interface used by OverlayMsg to report the cost of the messages.
 	 */
-	public void showTextWithRect(int globalLayoutId, int viewToSurround, String msg, int position, final OverlayMsg.Event overlayEvent)
+	public interface MetricsListener
 	{
-		int tempViewId[] = new int[1];
-		int tempShape[] = new int[1];
-		tempViewId[0] = viewToSurround;
-		tempShape[0] = SHAPE_RECTANGLE;
-		showTextWithMultiple(globalLayoutId, tempViewId, tempShape, msg, position, overlayEvent);
-
+		/**
+		 * @brief Called when a displayed message is removed.
+		 * @param metrics Measures of the message, only valid during the call.
+		 */
+		public void onShowMetrics(ShowMetrics metrics);
 	}
-	
+
 	/**
-	 * @brief Displays a message with 2 items surrounded by a rectangle.
-	 * @param globalLayoutId Id of the main layout.
-	 * @param viewToSurround1 First view that will be surrounded.
-	 * @param viewToSurround2 Second view that will be surrounded.
-	 * @param msg Message to show.
-	 * @param position Position of the text on the screen.
-	 * @param overlayEvent Event called at the end of the display.
-	 * @details 
-	 * The @b globalLayoutId parameter must refer to a FrameLayout.\n
-	 * The @b position parameter is defined by : 
-	 * - OverlayMsg::POSITION_TOP,
-	 * - OverlayMsg::POSITION_CENTER,
-	 * - OverlayMsg::POSITION_BOTTOM.
+	 * @class ShowMetrics
+	 * @brief Measures of a displayed message.
+	 * @details Times are in nanoseconds, a value is 0 when the step did not happen.
 	 */
-	public void showTextWithBigRect(int globalLayoutId, int viewToSurround1, int viewToSurround2, String msg, int position, final OverlayMsg.Event overlayEvent)
+	public static class ShowMetrics
 	{
-		final FrameLayout globalLayout = (FrameLayout)activity.findViewById(globalLayoutId);
-		createOverlayLayout(globalLayout, overlayEvent);
-
-		Bitmap bitmap = createBitmap(globalLayout);
-		Canvas canvas = new Canvas(bitmap);
-		
-		int location1[] = new int[2];
-		int location2[] = new int[2];
-		activity.findViewById(viewToSurround1).getLocationInWindow(location1);
-		View v2 = activity.findViewById(viewToSurround2);
-		v2.getLocationInWindow(location2);
-		int offset = getStartOffset(globalLayout);
-		
-		addBackground(canvas, globalLayout.getWidth(), globalLayout.getHeight());
-		addRect(canvas, 
-				location1[0], 
-				location1[1] - offset, 
-				location2[0] - location1[0] + v2.getWidth(), 
-				location2[1] - location1[1] + v2.getHeight());
-		currentLayout.addView(getMessageLayout(msg, position));
-
-		setBackgroundToLayout(currentLayout, bitmap);
-		currentlyShowed = true;
-		globalLayout.addView(currentLayout);
+		/** @brief Time to find the surrounded views and read their geometry. */
+		public long resolveTime;
+		/** @brief Time to draw or to read from the disk the background bitmap, in another thread for an asynchronous message. */
+		public long rasterizeTime;
+		/** @brief Bytes of the bitmaps allocated for the message, 0 if the bitmap came from the pool. */
+		public long bitmapBytes;
+		/** @brief Time from the show call to the first drawn frame. */
+		public long firstFrameTime;
+		/** @brief Duration of the fade in. */
+		public long fadeInTime;
+		/** @brief Duration of the fade out. */
+		public long fadeOutTime;
+		/** @brief Time from the dismiss of the message to its event. */
+		public long dismissLatency;
+		/** @brief Time of the show call. */
+		long startTime;
+		/** @brief Time of the dismiss. */
+		long dismissTime;
 	}
 
-	
 	/**
-	 * @brief Displays multiple items surrounded by a choosen shape .
-	 * @param globalLayoutId Id of the main layout.
-	 * @param viewToSurroundArray Array of items id.
-	 * @param shapeArray Array of corresponding shape.
-	 * @param msg Message to show.
-	 * @param position Position of the text on the screen.
-	 * @param overlayEvent Event called at the end of the display.
-	 * The @b globalLayoutId parameter must refer to a FrameLayout.\n
-	 * The @b shapeArray parameter is defined by : 
-	 *  - OverlayMsg::SHAPE_CIRCLE,
-	 *  - OverlayMsg::SHAPE_RECTANGLE.
-	 * The @b position parameter is defined by : 
-	 * - OverlayMsg::POSITION_TOP,
-	 * - OverlayMsg::POSITION_CENTER,
-	 * - OverlayMsg::POSITION_BOTTOM.
+	 * @class BitmapPool
+	 * @brief Pool of background bitmaps reused between messages.
+	 * @details Bitmaps are keyed by their size and configuration. A bitmap released
+	 * to the pool is cleared and kept until the next message of the same size,
+	 * the oldest bitmaps are recycled when the pool exceeds its byte budget.
 	 */
-	public void showTextWithMultiple(int globalLayoutId, int[] viewToSurroundArray, int[] shapeArray, String msg, int position, final OverlayMsg.Event overlayEvent)
+	public static class BitmapPool
 	{
-		int length = viewToSurroundArray.length;
-		if (shapeArray.length == length)
+		/** @brief Default byte budget of the pool. */
+		public final static long DEFAULT_MAX_BYTES = 16 * 1024 * 1024;
+		/** @brief Free bitmaps, the oldest first. */
+		private final ArrayList<Bitmap> freeBitmaps = new ArrayList<Bitmap>();
+		/** @brief Byte budget of the pool. */
+		private long maxBytes;
+		/** @brief Bytes held by the free bitmaps. */
+		private long currentBytes;
+		/** @brief Number of requests served by a pooled bitmap. */
+		private long hitCount;
+		/** @brief Number of requests that needed a new bitmap. */
+		private long missCount;
+
+		/**
+		 * @brief Class constructor.
+		 * @param maxBytes Byte budget of the pool.
+		 */
+		public BitmapPool(long maxBytes)
 		{
-			final FrameLayout globalLayout = (FrameLayout)activity.findViewById(globalLayoutId);
-			createOverlayLayout(globalLayout, overlayEvent);
+			this.maxBytes = maxBytes;
+		}
 
-			Bitmap bitmap = createBitmap(globalLayout);
-			Canvas canvas = new Canvas(bitmap);
-			
-			addBackground(canvas, globalLayout.getWidth(), globalLayout.getHeight());
+		/**
+		 * @brief Get a cleared bitmap.
+		 * @param width Width of the bitmap.
+		 * @param height Height of the bitmap.
+		 * @param config Configuration of the bitmap.
+		 * @return Pooled bitmap if one matches, a new bitmap otherwise.
+		 */
+		public Bitmap obtain(int width, int height, Bitmap.Config config)
+		{
+			return obtain(width, height, config, null);
+		}
 
-			int location[] = new int[2];
-			// Display all shapes
-			for (int i = 0; i < length; ++i)
+		/**
+		 * @brief Get a cleared bitmap and count the allocated bytes.
+		 * @param width Width of the bitmap.
+		 * @param height Height of the bitmap.
+		 * @param config Configuration of the bitmap.
+		 * @param metrics Measures receiving the bytes of a new bitmap, can be null.
+		 * @return Pooled bitmap if one matches, a new bitmap otherwise.
+		 */
+		synchronized Bitmap obtain(int width, int height, Bitmap.Config config, ShowMetrics metrics)
+		{
+			for (int i = freeBitmaps.size() - 1; i >= 0; --i)
 			{
-				View v = activity.findViewById(viewToSurroundArray[i]);
-				v.getLocationInWindow(location);
-				// Add a circle
-				if (shapeArray[i] == SHAPE_CIRCLE)
-				{
-					int posX = v.getWidth() / 2 + location[0];
-					int posY = v.getHeight() / 2 + location[1] - getStartOffset(globalLayout);
-					int radius;
-					if (v.getWidth() < v.getHeight())
-						radius = v.getHeight() / 2;
-					else
-						radius = v.getWidth() / 2;
-					addCircle(canvas, posX, posY, radius);
-				}
-				else
+				Bitmap bitmap = freeBitmaps.get(i);
+				if (bitmap.getWidth() == width && bitmap.getHeight() == height && bitmap.getConfig() == config)
 				{
-					// Add a rectangle
-					addRect(canvas, location[0], location[1] - getStartOffset(globalLayout), v.getWidth(), v.getHeight());
+					freeBitmaps.remove(i);
+					currentBytes -= getBytes(bitmap);
+					++hitCount;
+					return bitmap;
 				}
 			}
-			currentLayout.addView(getMessageLayout(msg, position));
-			setBackgroundToLayout(currentLayout, bitmap);
-			currentlyShowed = true;
-			globalLayout.addView(currentLayout);
+			++missCount;
+			Bitmap bitmap = Bitmap.createBitmap(width, height, config);
+			if (metrics != null)
+				metrics.bitmapBytes += getBytes(bitmap);
+			return bitmap;
 		}
-	}
 
-	/**
-	 * @brief Add a fade in animation to the overlay layout
-	 */
-	private void setFadeIn()
-	{
-		Animation fadeIn = new AlphaAnimation(0, 1);
-	    fadeIn.setDuration(150);
-	    currentLayout.setAnimation(fadeIn);
-	}
-	
-	/**
-	 * @brief Add a fade out animation to the overlay layout.
-	 * @param overlayEvent Event called at the end of the display.
-	 * @details The event is attached in this method and called at the end of the animation.
-	 */
-	private void setFadeOut(final OverlayMsg.Event overlayEvent)
-	{
-		currentLayout.setOnClickListener(new OnClickListener() {
-			public void onClick(View v) {
-				Animation fadeOut = new AlphaAnimation(1, 0);
-			    fadeOut.setDuration(150);
-			    fadeOut.setAnimationListener(new AnimationListener() {
-					public void onAnimationStart(Animation animation) {}
-					public void onAnimationRepeat(Animation animation) {}
-					public void onAnimationEnd(Animation animation) {
-						// Remove the layout from the parent
-						currentlyShowed = false;
-						((ViewGroup)currentLayout.getParent()).removeView(currentLayout);
-						if (overlayEvent != null)
-							overlayEvent.event();
-						}});
-			    currentLayout.startAnimation(fadeOut);
-			}});
-	}
-	
-	/**
-	 * @brief Return the offset of the action bar. 
-	 * @param globalLayout Main layout.
-	 */
-	private int getStartOffset(FrameLayout globalLayout)
-	{
-		int[] location = new int[2];
-		globalLayout.getLocationInWindow(location);
-		return location[1];
-	}
-	
-	/**
-	 * @brief Create the base bitmap.
-	 * @param globalLayout Main layout.
-	 * @return Created bitmap
-	 */
-	private Bitmap createBitmap(FrameLayout globalLayout)
-	{
-		return Bitmap.createBitmap(globalLayout.getWidth(), globalLayout.getHeight(), Bitmap.Config.ARGB_8888);
-	}
-	
-	/**
-	 * @brief Create the overlay layout.
-	 * @param globalLayout Main layout.
-	 * @param overlayEvent Event called at the end of the display.
-	 */
-	private void createOverlayLayout(FrameLayout globalLayout, OverlayMsg.Event overlayEvent)
-	{
-		currentLayout = new RelativeLayout(activity);
-		currentLayout.setLayoutParams(new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT));
-		setFadeIn();
-		setFadeOut(overlayEvent);
-	}
-	
-	/**
-	 * @brief Add a background to the canvas.
-	 * @param canvas Destination canvas.
-	 * @param width Width of the background.
-	 * @param height Height of the background.
-	 * @see drawRect
-	 */
-	private void addBackground(Canvas canvas, int width, int height)
-	{
-		drawRect(canvas, 0, 0, width, height, backgroundColor);
-	}
-	
-	/**
-	 * @brief Add a transparent circle with border to the canvas.
-	 * @param canvas Destination canvas.
-	 * @param x Circle horizontal position.
-	 * @param y Circle vertical position.
-	 * @param radius Circle radius.
-	 * @see drawCircle
-	 */
-	private void addCircle(Canvas canvas, int x, int y, int radius)
-	{
-		drawCircle(canvas, x, y, radius + borderSize, borderColor);
-		drawCircle(canvas, x, y, radius, 0x00FFFFFF);		
-	}
-	
-	/**
-	 * @brief Draw a circle in the canvas.
-	 * @param canvas Destination canvas.
-	 * @param x Circle horizontal position.
-	 * @param y Circle vertical position.
-	 * @param radius Circle radius.
-	 * @param color Circle color.
-	 * @details Use a color like 0x00xxxxxx to make a hole.
-	 */
-	private void drawCircle(Canvas canvas, int x, int y, int radius, int color)
-	{
-		Paint paint = new Paint();
-		// Test for transparent color
-		if ((color & 0x00FFFFFF) == color)
+		/**
+		 * @brief Give back a bitmap to the pool.
+		 * @param bitmap Bitmap that is no longer drawn.
+		 * @details The bitmap is cleared, or recycled if it does not fit in the budget.
+		 */
+		public synchronized void release(Bitmap bitmap)
 		{
-			// Make a hole
-			paint.setColor(activity.getResources().getColor(android.R.color.transparent));
-			paint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.CLEAR));
+			if (bitmap == null || bitmap.isRecycled())
+				return;
+			long bytes = getBytes(bitmap);
+			if (bytes > maxBytes)
+			{
+				bitmap.recycle();
+				return;
+			}
+			bitmap.eraseColor(0x00000000);
+			freeBitmaps.add(bitmap);
+			currentBytes += bytes;
+			trimToSize(maxBytes);
 		}
-		else
-			paint.setColor(color);
-		
-		paint.setAntiAlias(antiAlias);
-		canvas.drawCircle(x, y, radius, paint);
-	}
-	
-	/**
-	 * @brief Add a transparent rectangle with border to the canvas.
-	 * @param canvas Destination canvas.
-	 * @param x Rectangle horizontal position.
-	 * @param y Rectangle vertical position.
-	 * @param width Rectangle width.
-	 * @param height Rectangle height.
-	 * @see drawRect
-	 */
-	private void addRect(Canvas canvas, int x, int y, int width, int height)
-	{
-		
-		drawRect(canvas, x - borderSize, y - borderSize, x + width + borderSize, y + height + borderSize, borderColor);
-		drawRect(canvas, x, y, x + width, y + height, 0x00FFFFFF);		
-	}
-	
-	/**
-	 * @brief Draw a rectangle in the canvas.
-	 * @param canvas Destination canvas.
-	 * @param x Rectangle horizontal position.
-	 * @param y Rectangle vertical position.
-	 * @param width Rectangle width.
-	 * @param height Rectangle height.
-	 * @param color Rectangle color.
-	 * @details Use a color like 0x00xxxxxx to make a hole.
-	 */
-	private void drawRect(Canvas canvas, int x, int y, int width, int height, int color)
-	{
-		Paint paint = new Paint();
-		// Test for transparent color
-		if ((color & 0x00FFFFFF) == color)
+
+		/**
+		 * @brief Recycle the oldest bitmaps until the pool fits in a size.
+		 * @param size Maximum number of bytes to keep.
+		 */
+		public synchronized void trimToSize(long size)
 		{
-			// Make a hole
-			paint.setColor(activity.getResources().getColor(android.R.color.transparent));
-			paint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.CLEAR));
+			while (currentBytes > size && !freeBitmaps.isEmpty())
+			{
+				Bitmap bitmap = freeBitmaps.remove(0);
+				currentBytes -= getBytes(bitmap);
+				bitmap.recycle();
+			}
+		}
+
+		/**
+		 * @brief Recycle all the pooled bitmaps.
+		 */
+		public void clear()
+		{
+			trimToSize(0);
+		}
+
+		/**
+		 * @brief Change the byte budget of the pool.
+		 * @param maxBytes Byte budget of the pool.
+		 */
+		public synchronized void setMaxBytes(long maxBytes)
+		{
+			this.maxBytes = maxBytes;
+			trimToSize(maxBytes);
+		}
+
+		/**
+		 * @brief Get the byte budget of the pool.
+		 * @return Byte budget.
+		 */
+		public synchronized long getMaxBytes()
+		{
+			return maxBytes;
+		}
+
+		/**
+		 * @brief Get the bytes held by the pooled bitmaps.
+		 * @return Number of bytes.
+		 */
+		public synchronized long getCurrentBytes()
+		{
+			return currentBytes;
+		}
+
+		/**
+		 * @brief Get the number of requests served by a pooled bitmap.
+		 * @return Hit count.
+		 */
+		public synchronized long getHitCount()
+		{
+			return hitCount;
+		}
+
+		/**
+		 * @brief Get the number of requests that needed a new bitmap.
+		 * @return Miss count.
+		 */
+		public synchronized long getMissCount()
+		{
+			return missCount;
+		}
+
+		/**
+		 * @brief Get the size in memory of a bitmap.
+		 * @param bitmap Bitmap to measure.
+		 * @return Number of bytes.
+		 */
+		private static long getBytes(Bitmap bitmap)
+		{
+			return (long)bitmap.getRowBytes() * bitmap.getHeight();
 		}
-		else
-			paint.setColor(color);
-		
-		paint.setAntiAlias(antiAlias);
-		canvas.drawRect(x, y, width, height, paint);
 	}
-	
+
 	/**
-	 * @brief Get the message TextView.
-	 * @param msg Message of the TextView.
-	 * @return Created TextView.
+	 * @class TextLayoutCache
+	 * @brief Measured messages reused between the shows.
+	 * @details Layouts are keyed by the text, the text size in pixel, the typeface and
+	 * the available width. They can be created in another thread, the least recently
+	 * used layouts are forgotten when the cache is full.
 	 */
-	private TextView getTextView(String msg)
+	public static class TextLayoutCache
 	{
-		TextView textView = new TextView(activity);
-		textView.setGravity(Gravity.CENTER_HORIZONTAL);
-		textView.setTextColor(textColor);
-		if (showTextBackground)
-			textView.setBackgroundColor(textBackgroundColor);
-		if (textFont != null)
-			textView.setTypeface(textFont);
-		textView.setTextSize(textSize);
-		textView.setText(msg);
-		return textView;
-	}
-	
-	/**
-	 * @brief Get the message "Press to continue" TextView.
-	 * @return Created TextView.
+		/** @brief Default number of layouts kept. */
+		public final static int DEFAULT_MAX_ENTRIES = 32;
+		/** @brief Layouts, the least recently used first. */
+		private final LinkedHashMap<TextKey, StaticLayout> layouts;
+		/** @brief Key reused for the lookups. */
+		private final TextKey lookupKey = new TextKey();
+		/** @brief Estimated size of a layout without its text and its lines. */
+		private final static int LAYOUT_BYTES = 256;
+		/** @brief Estimated size of a line of a layout. */
+		private final static int LINE_BYTES = 64;
+		/** @brief Maximum number of layouts kept. */
+		private int maxEntries;
+		/** @brief Byte budget of the cache. */
+		private long maxBytes = Long.MAX_VALUE;
+		/** @brief Estimated bytes held by the layouts. */
+		private long currentBytes;
+		/** @brief Number of requests served by a cached layout. */
+		private long hitCount;
+		/** @brief Number of requests that needed a new layout. */
+		private long missCount;
+
+		/**
+		 * @brief Class constructor.
+		 * @param maxEntries Maximum number of layouts kept.
+		 */
+		public TextLayoutCache(int maxEntries)
+		{
+			this.maxEntries = maxEntries;
+			layouts = new LinkedHashMap<TextKey, StaticLayout>(16, 0.75f, true);
+		}
+
+		/**
+		 * @brief Get the layout of a text, measured if not in the cache.
+		 * @param text Text to measure.
+		 * @param textSize Text size in pixel.
+		 * @param typeface Typeface of the text, null for the default one.
+		 * @param width Available width.
+		 * @return Layout of the text, centered horizontally.
+		 * @details Can be called from any thread, the text is measured outside of the lock.
+		 */
+		public StaticLayout obtain(String text, float textSize, Typeface typeface, int width)
+		{
+			synchronized (this)
+			{
+				lookupKey.set(text, textSize, typeface, width);
+				StaticLayout layout = layouts.get(lookupKey);
+				if (layout != null)
+				{
+					++hitCount;
+					return layout;
+				}
+				++missCount;
+			}
+			TextPaint paint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+			paint.setTextSize(textSize);
+			paint.setTypeface(typeface);
+			StaticLayout layout = new StaticLayout(text, paint, width, Layout.Alignment.ALIGN_CENTER, 1f, 0f, true);
+			TextKey key = new TextKey();
+			key.set(text, textSize, typeface, width);
+			synchronized (this)
+			{
+				StaticLayout previousLayout = layouts.put(key, layout);
+				if (previousLayout != null)
+					currentBytes -= getBytes(text, previousLayout);
+				currentBytes += getBytes(text, layout);
+				trim(maxEntries, maxBytes);
+			}
+			return layout;
+		}
+
+		/**
+		 * @brief Forget all the layouts.
+		 */
+		public synchronized void clear()
+		{
+			layouts.clear();
+			currentBytes = 0;
+		}
+
+		/**
+		 * @brief Change the maximum number of layouts kept.
+		 * @param maxEntries Maximum number of layouts.
+		 */
+		public synchronized void setMaxEntries(int maxEntries)
+		{
+			this.maxEntries = maxEntries;
+			trim(maxEntries, maxBytes);
+		}
+
+		/**
+		 * @brief Change the byte budget of the cache.
+		 * @param maxBytes Byte budget of the cache.
+		 */
+		public synchronized void setMaxBytes(long maxBytes)
+		{
+			this.maxBytes = maxBytes;
+			trim(maxEntries, maxBytes);
+		}
+
+		/**
+		 * @brief Forget the least recently used layouts until the cache fits in a size.
+		 * @param size Maximum number of bytes to keep.
+		 */
+		public synchronized void trimToSize(long size)
+		{
+			trim(maxEntries, size);
+		}
+
+		/**
+		 * @brief Get the estimated bytes held by the layouts.
+		 * @return Number of bytes.
+		 */
+		public synchronized long getCurrentBytes()
+		{
+			return currentBytes;
+		}
+
+		/**
+		 * @brief Forget the least recently used layouts.
+		 * @param entries Maximum number of layouts to keep.
+		 * @param size Maximum number of bytes to keep.
+		 */
+		private void trim(int entries, long size)
+		{
+			Iterator<Map.Entry<TextKey, StaticLayout>> iterator = layouts.entrySet().iterator();
+			while ((layouts.size() > entries || currentBytes > size) && iterator.hasNext())
+			{
+				Map.Entry<TextKey, StaticLayout> entry = iterator.next();
+				currentBytes -= getBytes(entry.getKey().text, entry.getValue());
+				iterator.remove();
+			}
+		}
+
+		/**
+		 * @brief Estimate the size in memory of a layout.
+		 * @param text Text of the layout.
+		 * @param layout Measured text.
+		 * @return Number of bytes.
+		 */
+		private static long getBytes(String text, StaticLayout layout)
+		{
+			return LAYOUT_BYTES + 2L * text.length() + (long)LINE_BYTES * layout.getLineCount();
+		}
+
+		/**
+		 * @brief Get the number of layouts in the cache.
+		 * @return Number of layouts.
+		 */
+		public synchronized int size()
+		{
+			return layouts.size();
+		}
+
+		/**
+		 * @brief Get the number of requests served by a cached layout.
+		 * @return Hit count.
+		 */
+		public synchronized long getHitCount()
+		{
+			return hitCount;
+		}
+
+		/**
+		 * @brief Get the number of requests that needed a new layout.
+		 * @return Miss count.
+		 */
+		public synchronized long getMissCount()
+		{
+			return missCount;
+		}
+
+		/**
+		 * @class TextKey
+		 * @brief Key of a text layout.
+		 */
+		private static class TextKey
+		{
+			/** @brief Measured text. */
+			private String text;
+			/** @brief Text size in pixel. */
+			private float textSize;
+			/** @brief Typeface, compared by identity. */
+			private Typeface typeface;
+			/** @brief Available width. */
+			private int width;
+
+			/**
+			 * @brief Set the values of the key.
+			 * @param text Measured text.
+			 * @param textSize Text size in pixel.
+			 * @param typeface Typeface of the text.
+			 * @param width Available width.
+			 */
+			void set(String text, float textSize, Typeface typeface, int width)
+			{
+				this.text = text;
+				this.textSize = textSize;
+				this.typeface = typeface;
+				this.width = width;
+			}
+
+			@Override
+			public boolean equals(Object object)
+			{
+				if (!(object instanceof TextKey))
+					return false;
+				TextKey other = (TextKey)object;
+				return width == other.width && textSize == other.textSize && typeface == other.typeface && text.equals(other.text);
+			}
+
+			@Override
+			public int hashCode()
+			{
+				int hash = text.hashCode();
+				hash = hash * 31 + Float.floatToIntBits(textSize);
+				hash = hash * 31 + System.identityHashCode(typeface);
+				return hash * 31 + width;
+			}
+		}
+	}
+
+	/**
+	 * @class MemoryUsage
+	 * @brief Bytes held by the caches of the messages.
+	 * @details Given by OverlayMsg::getMemoryUsage. The backgrounds of the displayed messages
+	 * are not counted, only what is kept between the messages.
 	 */
-	private TextView getPressToContinueTextView()
+	public static class MemoryUsage
 	{
-		TextView textView = new TextView(activity);
-		textView.setGravity(Gravity.CENTER_HORIZONTAL);
-		textView.setTextColor(textColor);
-		textView.setTextSize(pressToContinueTextSize);
-		textView.setText(activity.getResources().getString(R.string.overlay_msg_press_to_continue));
-		return textView;
+		/** @brief Byte budget shared by the bitmap pool and the text layouts. */
+		public final long budget;
+		/** @brief Bytes of the free bitmaps of the pool. */
+		public final long bitmapPoolBytes;
+		/** @brief Estimated bytes of the measured messages. */
+		public final long textLayoutBytes;
+		/** @brief Size of the font files of the loaded typefaces. */
+		public final long typefaceBytes;
+		/** @brief Size of the files of the disk cache, -1 if unknown. Not in memory. */
+		public final long diskCacheBytes;
+
+		/**
+		 * @brief Class constructor.
+		 * @param budget Byte budget.
+		 * @param bitmapPoolBytes Bytes of the bitmap pool.
+		 * @param textLayoutBytes Bytes of the text layouts.
+		 * @param typefaceBytes Bytes of the typefaces.
+		 * @param diskCacheBytes Bytes of the disk cache.
+		 */
+		MemoryUsage(long budget, long bitmapPoolBytes, long textLayoutBytes, long typefaceBytes, long diskCacheBytes)
+		{
+			this.budget = budget;
+			this.bitmapPoolBytes = bitmapPoolBytes;
+			this.textLayoutBytes = textLayoutBytes;
+			this.typefaceBytes = typefaceBytes;
+			this.diskCacheBytes = diskCacheBytes;
+		}
+
+		/**
+		 * @brief Get the bytes held in memory.
+		 * @return Bytes of the bitmap pool, the text layouts and the typefaces.
+		 */
+		public long getTotalBytes()
+		{
+			return bitmapPoolBytes + textLayoutBytes + typefaceBytes;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "OverlayMsg memory: " + getTotalBytes() + " / " + budget + " bytes (bitmap pool " + bitmapPoolBytes
+					+ ", text layouts " + textLayoutBytes + ", typefaces " + typefaceBytes + "), disk cache " + diskCacheBytes + " bytes";
+		}
 	}
-	
+
 	/**
-	 * @brief Get the LayoutParams neccessary for the TextView position.
-	 * @param position Position of the text on the screen.
-	 * @return LayoutParams of the TextView.
-	 * @details 
-	 * The @b globalLayoutId parameter must refer to a FrameLayout.\n
-	 * The @b position parameter is defined by : 
-	 * - OverlayMsg::POSITION_TOP,
-	 * - OverlayMsg::POSITION_CENTER,
-	 * - OverlayMsg::POSITION_BOTTOM.
+	 * @class MemoryCallbacks
+	 * @brief Trim the caches when the system needs memory.
+	 * @details Only registered from Android 4.0.
 	 */
-	private RelativeLayout.LayoutParams getLayoutParams(int position)
+	@SuppressLint("NewApi")
+	private static class MemoryCallbacks implements ComponentCallbacks2
 	{
-		RelativeLayout.LayoutParams layoutParams;
-		
-		layoutParams = new RelativeLayout.LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.WRAP_CONTENT);
-		switch (position)
+		public void onTrimMemory(int level)
 		{
-		case POSITION_TOP:
-			layoutParams.addRule(RelativeLayout.ALIGN_PARENT_TOP);
-			layoutParams.setMargins(0, textMargin, 0, 0);
-			break;
-		case POSITION_CENTER:
-			layoutParams.addRule(RelativeLayout.CENTER_IN_PARENT);
-			break;
-		case POSITION_BOTTOM:
-			layoutParams.addRule(RelativeLayout.ALIGN_PARENT_BOTTOM);
-			layoutParams.setMargins(0, 0, 0, textMargin);
-			break;
+			trimMemory(level);
+		}
+
+		public void onLowMemory()
+		{
+			trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+		}
+
+		public void onConfigurationChanged(Configuration newConfig)
+		{
+			// Nothing to do
 		}
-		return layoutParams;
 	}
-	
+
 	/**
-	 * @brief Create the message layout.
-	 * @param msg Message to show.
-	 * @param position Position in the screen.
+	 * @class ScrimRenderer
+	 * @brief Draw the background with the surrounded items.
+	 * @details Paints are created once and updated when the style changes. A copy
+	 * can be used to draw from another thread. The shapes of all the items are merged
+	 * in one path per pass, so the number of draws does not depend on the number of items.
 	 */
-	private LinearLayout getMessageLayout(String msg, int position)
-	{
-		LinearLayout layout = new LinearLayout(activity);
-		layout.setLayoutParams(getLayoutParams(position));
-		layout.setOrientation(LinearLayout.VERTICAL);
-		layout.setGravity(Gravity.CENTER_HORIZONTAL);
-		if (showTextBackground)
-			layout.setBackgroundColor(textBackgroundColor);
-		layout.addView(getTextView(msg));
-		if (showPressToContinue)
-			layout.addView(getPressToContinueTextView());
-		return layout;
-	}
+	private static class ScrimRenderer
+	{
+		/** @brief Union of the items with their border. */
+		private final Path borderPath = new Path();
+		/** @brief Union of the holes. */
+		private final Path holePath = new Path();
+		/** @brief Middle line of the borders drawn over a mask. */
+		private final Path strokePath = new Path();
+		/** @brief Borders without their holes, drawn directly when the canvas cannot clip a path. */
+		private final Path ringPath = new Path();
+		/** @brief Paint of the background. */
+		private final Paint backgroundPaint = new Paint();
+		/** @brief Paint of the borders. */
+		private final Paint borderPaint = new Paint();
+		/** @brief Paint of the holes. */
+		private final Paint holePaint = new Paint();
+		/** @brief Paint of the borders drawn over a mask. */
+		private final Paint strokePaint = new Paint();
+		/** @brief Border size in pixel. */
+		private int borderSize;
+
+		/**
+		 * @brief Class constructor.
+		 */
+		ScrimRenderer()
+		{
+			holePaint.setXfermode(clearMode);
+			strokePaint.setStyle(Paint.Style.STROKE);
+		}
+
+		/**
+		 * @brief Copy constructor.
+		 * @param other Renderer to copy.
+		 */
+		ScrimRenderer(ScrimRenderer other)
+		{
+			this();
+			setStyle(other.backgroundPaint.getColor(), other.borderPaint.getColor(), other.borderSize, other.backgroundPaint.isAntiAlias());
+		}
+
+		/**
+		 * @brief Draw the background with all the surrounded items.
+		 * @param canvas Destination canvas.
+		 * @param width Width of the background.
+		 * @param height Height of the background.
+		 * @param highlights Surrounded items.
+		 */
+		void draw(Canvas canvas, int width, int height, ArrayList<OverlayGeometry.Highlight> highlights)
+		{
+			setPaths(highlights);
+			drawPaths(canvas, width, height, false);
+		}
+
+		/**
+		 * @brief Draw the background with all the surrounded items in the window.
+		 * @param canvas Canvas of the view.
+		 * @param highlights Surrounded items.
+		 * @details Nothing is cleared, so no layer is needed: the background fills the
+		 * outside of the items with their border, the borders are drawn with the holes
+		 * clipped out. A hardware canvas before Android 4.3 cannot clip a path, the holes
+		 * are then added to the borders in the other direction. Only overlapping items
+		 * differ: a border can cover the hole of another item.
+		 */
+		@SuppressLint("NewApi")
+		@SuppressWarnings("deprecation")
+		void drawDirect(Canvas canvas, ArrayList<OverlayGeometry.Highlight> highlights)
+		{
+			// An empty path with an inverse fill covers the whole canvas
+			setPath(borderPath, highlights, borderSize);
+			borderPath.setFillType(Path.FillType.INVERSE_WINDING);
+			canvas.drawPath(borderPath, backgroundPaint);
+			borderPath.setFillType(Path.FillType.WINDING);
+			if (borderSize <= 0 || highlights.isEmpty())
+				return;
+			if (android.os.Build.VERSION.SDK_INT < android.os.Build.VERSION_CODES.JELLY_BEAN_MR2 && canvas.isHardwareAccelerated())
+			{
+				setPath(ringPath, highlights, borderSize);
+				addShapes(ringPath, highlights, 0, Path.Direction.CCW);
+				canvas.drawPath(ringPath, borderPaint);
+				return;
+			}
+			setPath(holePath, highlights, 0);
+			int saveCount = canvas.save();
+			if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.O)
+				canvas.clipOutPath(holePath);
+			else
+				canvas.clipPath(holePath, Region.Op.DIFFERENCE);
+			canvas.drawPath(borderPath, borderPaint);
+			canvas.restoreToCount(saveCount);
+		}
+
+		/**
+		 * @brief Draw the background in a bitmap.
+		 * @param canvas Canvas used to draw.
+		 * @param bitmap Destination bitmap.
+		 * @param width Width of the background.
+		 * @param height Height of the background.
+		 * @param scale Ratio between the background size and the bitmap size.
+		 * @param highlights Surrounded items.
+		 * @details An @b ALPHA_8 bitmap only receives the mask of the background, see ScrimRenderer::drawMask.
+		 */
+		void render(Canvas canvas, Bitmap bitmap, int width, int height, int scale, ArrayList<OverlayGeometry.Highlight> highlights)
+		{
+			canvas.setBitmap(bitmap);
+			int saveCount = canvas.save();
+			if (scale > 1)
+				canvas.scale(1f / scale, 1f / scale);
+			if (bitmap.getConfig() == Bitmap.Config.ALPHA_8)
+				drawMask(canvas, width, height, highlights);
+			else
+				draw(canvas, width, height, highlights);
+			canvas.restoreToCount(saveCount);
+		}
+
+		/**
+		 * @brief Draw again a part of the background in a bitmap.
+		 * @param canvas Canvas used to draw.
+		 * @param bitmap Destination bitmap.
+		 * @param width Width of the background.
+		 * @param height Height of the background.
+		 * @param scale Ratio between the background size and the bitmap size.
+		 * @param highlights Surrounded items.
+		 * @param region Part of the background to draw, in background coordinates.
+		 */
+		void renderRegion(Canvas canvas, Bitmap bitmap, int width, int height, int scale, ArrayList<OverlayGeometry.Highlight> highlights, Rect region)
+		{
+			canvas.setBitmap(bitmap);
+			int saveCount = canvas.save();
+			if (scale > 1)
+				canvas.scale(1f / scale, 1f / scale);
+			canvas.clipRect(region);
+			canvas.drawColor(0x00000000, PorterDuff.Mode.CLEAR);
+			if (bitmap.getConfig() == Bitmap.Config.ALPHA_8)
+				drawMask(canvas, width, height, highlights);
+			else
+				draw(canvas, width, height, highlights);
+			canvas.restoreToCount(saveCount);
+		}
+
+		/**
+		 * @brief Draw again parts of the background in a bitmap.
+		 * @param canvas Canvas used to draw.
+		 * @param bitmap Destination bitmap.
+		 * @param width Width of the background.
+		 * @param height Height of the background.
+		 * @param scale Ratio between the background size and the bitmap size.
+		 * @param highlights Surrounded items.
+		 * @param regions Parts of the background to draw, in background coordinates.
+		 * @param regionCount Number of parts used at the start of @p regions.
+		 * @details The paths are built once for all the parts. A part overlapping another
+		 * one is cleared and drawn again with the same pixels.
+		 */
+		void renderRegions(Canvas canvas, Bitmap bitmap, int width, int height, int scale, ArrayList<OverlayGeometry.Highlight> highlights, ArrayList<Rect> regions, int regionCount)
+		{
+			canvas.setBitmap(bitmap);
+			setPaths(highlights);
+			boolean mask = bitmap.getConfig() == Bitmap.Config.ALPHA_8;
+			int saveCount = canvas.save();
+			if (scale > 1)
+				canvas.scale(1f / scale, 1f / scale);
+			for (int i = 0; i < regionCount; ++i)
+			{
+				int regionSaveCount = canvas.save();
+				canvas.clipRect(regions.get(i));
+				canvas.drawColor(0x00000000, PorterDuff.Mode.CLEAR);
+				drawPaths(canvas, width, height, mask);
+				canvas.restoreToCount(regionSaveCount);
+			}
+			canvas.restoreToCount(saveCount);
+		}
+
+		/**
+		 * @brief Draw the mask of the background.
+		 * @param canvas Destination canvas.
+		 * @param width Width of the background.
+		 * @param height Height of the background.
+		 * @param highlights Surrounded items.
+		 * @details The mask is opaque outside of the items and their borders. It is tinted
+		 * with the background color and the borders are drawn over it by ScrimDrawable.
+		 */
+		void drawMask(Canvas canvas, int width, int height, ArrayList<OverlayGeometry.Highlight> highlights)
+		{
+			setPaths(highlights);
+			drawPaths(canvas, width, height, true);
+		}
+
+		/**
+		 * @brief Draw the borders of the items as strokes.
+		 * @param canvas Destination canvas.
+		 * @param highlights Surrounded items.
+		 */
+		void drawBorders(Canvas canvas, ArrayList<OverlayGeometry.Highlight> highlights)
+		{
+			if (borderSize <= 0 || highlights.isEmpty())
+				return;
+			setPath(strokePath, highlights, borderSize / 2f);
+			canvas.drawPath(strokePath, strokePaint);
+		}
+
+		/**
+		 * @brief Get the background color.
+		 * @return Color of the background paint.
+		 */
+		int getBackgroundColor()
+		{
+			return backgroundPaint.getColor();
+		}
+
+		/**
+		 * @brief Update the paints if the style has changed.
+		 * @param backgroundColor Background color.
+		 * @param borderColor Border color.
+		 * @param borderSize Border size in pixel.
+		 * @param antiAlias Use anti alias.
+		 * @details Paints are only modified when a value differs from the paint value.
+		 */
+		void setStyle(int backgroundColor, int borderColor, int borderSize, boolean antiAlias)
+		{
+			if (this.borderSize != borderSize)
+			{
+				this.borderSize = borderSize;
+				strokePaint.setStrokeWidth(borderSize);
+			}
+			if (backgroundPaint.isAntiAlias() != antiAlias)
+			{
+				backgroundPaint.setAntiAlias(antiAlias);
+				borderPaint.setAntiAlias(antiAlias);
+				holePaint.setAntiAlias(antiAlias);
+				strokePaint.setAntiAlias(antiAlias);
+			}
+			if (backgroundPaint.getColor() != backgroundColor)
+				backgroundPaint.setColor(backgroundColor);
+			if (borderPaint.getColor() != borderColor)
+			{
+				borderPaint.setColor(borderColor);
+				strokePaint.setColor(borderColor);
+			}
+		}
+	
+		/**
+		 * @brief Add a background to the canvas.
+		 * @param canvas Destination canvas.
+		 * @param width Width of the background.
+		 * @param height Height of the background.
+		 * @see drawRect
+		 */
+		private void addBackground(Canvas canvas, int width, int height)
+		{
+			drawRect(canvas, 0, 0, width, height, backgroundPaint);
+		}
+	
+		/**
+		 * @brief Build the paths of the borders and of the holes.
+		 * @param highlights Surrounded items.
+		 */
+		private void setPaths(ArrayList<OverlayGeometry.Highlight> highlights)
+		{
+			setPath(borderPath, highlights, borderSize);
+			setPath(holePath, highlights, 0);
+		}
+
+		/**
+		 * @brief Draw the background with the paths built by ScrimRenderer::setPaths.
+		 * @param canvas Destination canvas.
+		 * @param width Width of the background.
+		 * @param height Height of the background.
+		 * @param mask Draw only the mask, see ScrimRenderer::drawMask.
+		 */
+		private void drawPaths(Canvas canvas, int width, int height, boolean mask)
+		{
+			if (mask)
+			{
+				canvas.drawColor(0xFF000000);
+				canvas.drawPath(borderPath, holePaint);
+				return;
+			}
+			addBackground(canvas, width, height);
+			if (borderSize > 0)
+				canvas.drawPath(borderPath, borderPaint);
+			canvas.drawPath(holePath, holePaint);
+		}
+
+		/**
+		 * @brief Merge the shapes of the items in a path.
+		 * @param path Destination path, its previous shapes are removed.
+		 * @param highlights Surrounded items.
+		 * @param grow Distance added around each item.
+		 * @details All the shapes turn in the same direction, so the winding fill draws
+		 * their union and overlapping items are only drawn once.
+		 */
+		private static void setPath(Path path, ArrayList<OverlayGeometry.Highlight> highlights, float grow)
+		{
+			path.rewind();
+			addShapes(path, highlights, grow, Path.Direction.CW);
+		}
+
+		/**
+		 * @brief Add the shapes of the items to a path.
+		 * @param path Destination path, its previous shapes are kept.
+		 * @param highlights Surrounded items.
+		 * @param grow Distance added around each item.
+		 * @param direction Direction of the shapes, the other one removes them from a winding fill.
+		 */
+		private static void addShapes(Path path, ArrayList<OverlayGeometry.Highlight> highlights, float grow, Path.Direction direction)
+		{
+			for (int i = 0; i < highlights.size(); ++i)
+			{
+				OverlayGeometry.Highlight highlight = highlights.get(i);
+				if (highlight.shape == SHAPE_CIRCLE)
+					path.addCircle(highlight.centerX(), highlight.centerY(), highlight.radius() + grow, direction);
+				else
+					path.addRect(highlight.left - grow, highlight.top - grow, highlight.right + grow, highlight.bottom + grow, direction);
+			}
+		}
+	
+		/**
+		 * @brief Draw a rectangle in the canvas.
+		 * @param canvas Destination canvas.
+		 * @param left Rectangle left side.
+		 * @param top Rectangle top side.
+		 * @param right Rectangle right side.
+		 * @param bottom Rectangle bottom side.
+		 * @param paint Rectangle paint.
+		 * @details Use @b holePaint to make a hole.
+		 */
+		private void drawRect(Canvas canvas, int left, int top, int right, int bottom, Paint paint)
+		{
+			canvas.drawRect(left, top, right, bottom, paint);
+		}
 	
+	}
+
 	/**
-	 * @brief Apply background to overlay layout.
-	 * @param layout Overlay layout.
-	 * @param bitmap Background.
+	 * @class ScrimDrawable
+	 * @brief Background drawable of an overlay layout.
+	 * @details The bitmap is stretched to the bounds of the layout when it was drawn
+	 * at a reduced size. An @b ALPHA_8 mask is tinted with the background color and
+	 * the borders are drawn over it.
 	 */
-	@SuppressLint("NewApi")
-	@SuppressWarnings("deprecation")
-	private void setBackgroundToLayout(RelativeLayout layout, Bitmap bitmap)
+	private static class ScrimDrawable extends Drawable
 	{
-		Drawable drawable = new BitmapDrawable(activity.getResources(), bitmap);
-		int sdkVersion = android.os.Build.VERSION.SDK_INT;
-		if (sdkVersion < android.os.Build.VERSION_CODES.JELLY_BEAN)
-		    layout.setBackgroundDrawable(drawable);
-		else
-		    layout.setBackground(drawable);
+		/** @brief Background bitmap. */
+		private final Bitmap bitmap;
+		/** @brief Renderer of the borders, null if the bitmap is not a mask. */
+		private final ScrimRenderer borderRenderer;
+		/** @brief Surrounded items. */
+		private final ArrayList<OverlayGeometry.Highlight> highlights;
+		/** @brief Paint of the bitmap. */
+		private final Paint paint = new Paint();
+		/** @brief Alpha of the paint color before setAlpha. */
+		private final int baseAlpha;
+
+		/**
+		 * @brief Class constructor.
+		 * @param bitmap Background bitmap.
+		 * @param borderRenderer Renderer with the style of the message, null if the bitmap is not a mask.
+		 * @param highlights Surrounded items.
+		 */
+		ScrimDrawable(Bitmap bitmap, ScrimRenderer borderRenderer, ArrayList<OverlayGeometry.Highlight> highlights)
+		{
+			this.bitmap = bitmap;
+			this.borderRenderer = borderRenderer;
+			this.highlights = highlights;
+			if (borderRenderer != null)
+				paint.setColor(borderRenderer.getBackgroundColor());
+			else
+				paint.setColor(0xFF000000);
+			baseAlpha = paint.getAlpha();
+			paint.setFilterBitmap(true);
+		}
+
+		@Override
+		public void draw(Canvas canvas)
+		{
+			canvas.drawBitmap(bitmap, null, getBounds(), paint);
+			if (borderRenderer != null)
+				borderRenderer.drawBorders(canvas, highlights);
+		}
+
+		@Override
+		public void setAlpha(int alpha)
+		{
+			paint.setAlpha(baseAlpha * alpha / 255);
+		}
+
+		@Override
+		public void setColorFilter(ColorFilter colorFilter)
+		{
+			paint.setColorFilter(colorFilter);
+		}
+
+		@Override
+		public int getOpacity()
+		{
+			return PixelFormat.TRANSLUCENT;
+		}
 	}
-	
+
 	/**
-	 * @brief Method to know if a message is currently showed.
-	 * @return True if message is currently showed.
+	 * @class Step
+	 * @brief Message of a walkthrough.
 	 */
-	public boolean isCurrentlyShowed()
+	public static class Step
 	{
-		return currentlyShowed;
+		/** @brief Array of items id. */
+		final int[] viewToSurroundArray;
+		/** @brief Array of corresponding shape. */
+		final int[] shapeArray;
+		/** @brief Message to show. */
+		final String msg;
+		/** @brief Position of the text on the screen. */
+		final int position;
+
+		/**
+		 * @brief Class constructor.
+		 * @param viewToSurroundArray Array of items id.
+		 * @param shapeArray Array of corresponding shape.
+		 * @param msg Message to show.
+		 * @param position Position of the text on the screen.
+		 * @details Parameters are defined as in OverlayMsg::showTextWithMultiple.
+		 * @throws IllegalArgumentException If the arrays have different lengths.
+		 */
+		public Step(int[] viewToSurroundArray, int[] shapeArray, String msg, int position)
+		{
+			if (viewToSurroundArray.length != shapeArray.length)
+				throw new IllegalArgumentException("viewToSurroundArray and shapeArray must have the same length");
+			this.viewToSurroundArray = viewToSurroundArray;
+			this.shapeArray = shapeArray;
+			this.msg = msg;
+			this.position = position;
+		}
 	}
-	
+
 	/**
-	 * @brief Hide the current message.
+	 * @class Spec
+	 * @brief Immutable message made by a Spec.Builder.
+	 * @details The items, the message and the style are checked once when the spec is built.
+	 * A spec can be displayed many times with OverlayMsg::show, without any check or
+	 * conversion of its parameters.
 	 */
-	public void hideCurrentMessage()
+	public static final class Spec
 	{
-		if (currentLayout != null && currentlyShowed)
+		/** @brief Id of the main layout. */
+		final int globalLayoutId;
+		/** @brief Items id, the 2 corners for a big rectangle. */
+		final int[] viewToSurroundArray;
+		/** @brief Shape of each item, null for a big rectangle. */
+		final int[] shapeArray;
+		/** @brief Message to show. */
+		final String msg;
+		/** @brief Position of the text on the screen. */
+		final int position;
+		/** @brief Style applied before the display, null to keep the style of the object. */
+		final Style style;
+
+		/**
+		 * @brief Class constructor.
+		 * @param builder Checked parameters.
+		 */
+		private Spec(Builder builder)
+		{
+			globalLayoutId = builder.globalLayoutId;
+			if (builder.bigRect)
+			{
+				viewToSurroundArray = new int[] { builder.ids[0], builder.ids[1] };
+				shapeArray = null;
+			}
+			else
+			{
+				viewToSurroundArray = new int[builder.count];
+				shapeArray = new int[builder.count];
+				System.arraycopy(builder.ids, 0, viewToSurroundArray, 0, builder.count);
+				System.arraycopy(builder.shapes, 0, shapeArray, 0, builder.count);
+			}
+			msg = builder.msg;
+			position = builder.position;
+			style = builder.style;
+		}
+
+		/**
+		 * @class Builder
+		 * @brief Builder of a Spec.
+		 */
+		public static final class Builder
 		{
-			currentLayout.performClick();
+			/** @brief Id of the main layout. */
+			private final int globalLayoutId;
+			/** @brief Items id. */
+			private int[] ids = new int[4];
+			/** @brief Shape of each item. */
+			private int[] shapes = new int[4];
+			/** @brief Number of items. */
+			private int count;
+			/** @brief The items are the 2 corners of a big rectangle. */
+			private boolean bigRect;
+			/** @brief Message to show. */
+			private String msg;
+			/** @brief Position of the text on the screen. */
+			private int position = POSITION_CENTER;
+			/** @brief Style of the message, null to keep the style of the object. */
+			private Style style;
+
+			/**
+			 * @brief Class constructor.
+			 * @param globalLayoutId Id of the main layout, it must refer to a FrameLayout.
+			 */
+			public Builder(int globalLayoutId)
+			{
+				this.globalLayoutId = globalLayoutId;
+			}
+
+			/**
+			 * @brief Surround an item by a circle.
+			 * @param viewToSurround View that will be surrounded.
+			 * @return This builder.
+			 * @throws IllegalStateException If a big rectangle is already added.
+			 */
+			public Builder circle(int viewToSurround)
+			{
+				return add(viewToSurround, SHAPE_CIRCLE);
+			}
+
+			/**
+			 * @brief Surround an item by a rectangle.
+			 * @param viewToSurround View that will be surrounded.
+			 * @return This builder.
+			 * @throws IllegalStateException If a big rectangle is already added.
+			 */
+			public Builder rect(int viewToSurround)
+			{
+				return add(viewToSurround, SHAPE_RECTANGLE);
+			}
+
+			/**
+			 * @brief Surround an item by a shape.
+			 * @param viewToSurround View that will be surrounded.
+			 * @param shape OverlayMsg::SHAPE_CIRCLE or OverlayMsg::SHAPE_RECTANGLE.
+			 * @return This builder.
+			 * @throws IllegalArgumentException If the shape is unknown.
+			 * @throws IllegalStateException If a big rectangle is already added.
+			 */
+			public Builder add(int viewToSurround, int shape)
+			{
+				if (shape != SHAPE_CIRCLE && shape != SHAPE_RECTANGLE)
+					throw new IllegalArgumentException("Unknown shape: " + shape);
+				if (bigRect)
+					throw new IllegalStateException("A big rectangle can't be mixed with other items");
+				if (count == ids.length)
+				{
+					int[] newIds = new int[count * 2];
+					int[] newShapes = new int[count * 2];
+					System.arraycopy(ids, 0, newIds, 0, count);
+					System.arraycopy(shapes, 0, newShapes, 0, count);
+					ids = newIds;
+					shapes = newShapes;
+				}
+				ids[count] = viewToSurround;
+				shapes[count] = shape;
+				++count;
+				return this;
+			}
+
+			/**
+			 * @brief Surround 2 items by a single rectangle.
+			 * @param viewToSurround1 First view that will be surrounded.
+			 * @param viewToSurround2 Second view that will be surrounded.
+			 * @return This builder.
+			 * @details As in OverlayMsg::showTextWithBigRect.
+			 * @throws IllegalStateException If other items are already added.
+			 */
+			public Builder bigRect(int viewToSurround1, int viewToSurround2)
+			{
+				if (count != 0)
+					throw new IllegalStateException("A big rectangle can't be mixed with other items");
+				ids[0] = viewToSurround1;
+				ids[1] = viewToSurround2;
+				count = 2;
+				bigRect = true;
+				return this;
+			}
+
+			/**
+			 * @brief Set the message.
+			 * @param msg Message to show.
+			 * @return This builder.
+			 */
+			public Builder message(String msg)
+			{
+				this.msg = msg;
+				return this;
+			}
+
+			/**
+			 * @brief Set the position of the message, OverlayMsg::POSITION_CENTER by default.
+			 * @param position OverlayMsg::POSITION_TOP, OverlayMsg::POSITION_CENTER or OverlayMsg::POSITION_BOTTOM.
+			 * @return This builder.
+			 * @throws IllegalArgumentException If the position is unknown.
+			 */
+			public Builder position(int position)
+			{
+				if (position != POSITION_TOP && position != POSITION_CENTER && position != POSITION_BOTTOM)
+					throw new IllegalArgumentException("Unknown position: " + position);
+				this.position = position;
+				return this;
+			}
+
+			/**
+			 * @brief Set the style of the message.
+			 * @param style Style applied to the object displaying the spec, null to keep its style.
+			 * @return This builder.
+			 */
+			public Builder style(Style style)
+			{
+				this.style = style;
+				return this;
+			}
+
+			/**
+			 * @brief Create the spec.
+			 * @return Immutable spec.
+			 * @throws IllegalStateException If there is no item or no message.
+			 */
+			public Spec build()
+			{
+				if (count == 0)
+					throw new IllegalStateException("No item to surround");
+				if (msg == null)
+					throw new IllegalStateException("No message");
+				return new Spec(this);
+			}
 		}
 	}
-}
 
+	/**
+	 * @class Layer
+	 * @brief Message displayed with other messages over the same background.
+	 * @details Given by OverlayMsg::showLayer. All the layers of an activity share one
+	 * overlay layout and one background with the holes of all the layers. Each layer has
+	 * its own message view, placed by its z-order, and is closed on its own.
+	 */
+	public static class Layer
+	{
+		/** @brief Object showing the layer. */
+		final OverlayMsg owner;
+		/** @brief Order of the layer, the highest is on top. */
+		final int zOrder;
+		/** @brief Event called when the layer is closed, can be null. */
+		final OverlayMsg.Event overlayEvent;
+		/** @brief Layout of the message. */
+		final LinearLayout messageLayout;
+		/** @brief Surrounded items of the layer. */
+		final ArrayList<OverlayGeometry.Highlight> highlights = new ArrayList<OverlayGeometry.Highlight>();
+		/** @brief Surrounded views, in the order of the items. */
+		final ArrayList<View> targets = new ArrayList<View>();
+		/** @brief Second view of a big rectangle, null for other items. */
+		final ArrayList<View> endTargets = new ArrayList<View>();
+		/** @brief State at true while the layer is displayed. */
+		boolean showing;
+
+		/**
+		 * @brief Class constructor.
+		 * @param owner Object showing the layer.
+		 * @param zOrder Order of the layer.
+		 * @param overlayEvent Event called when the layer is closed.
+		 */
+		Layer(OverlayMsg owner, int zOrder, OverlayMsg.Event overlayEvent)
+		{
+			this.owner = owner;
+			this.zOrder = zOrder;
+			this.overlayEvent = overlayEvent;
+			messageLayout = OverlayView.createMessageLayout(owner.activity);
+		}
+
+		/**
+		 * @brief Move the last items of an overlay layout to the layer.
+		 * @param layout Overlay layout receiving the items of the layer.
+		 * @param first Index of the first item of the layer.
+		 */
+		void takeItems(OverlayView layout, int first)
+		{
+			for (int i = first; i < layout.highlights.size(); ++i)
+			{
+				highlights.add(layout.highlights.get(i));
+				targets.add(layout.targets.get(i));
+				endTargets.add(layout.endTargets.get(i));
+			}
+		}
+
+		/**
+		 * @brief Close the layer.
+		 * @details The background is drawn again without the holes of the layer, the last
+		 * layer fades out.
+		 */
+		public void dismiss()
+		{
+			owner.dismissLayer(this);
+		}
+
+		/**
+		 * @brief Method to know if the layer is displayed.
+		 * @return True until the layer is closed.
+		 */
+		public boolean isShowing()
+		{
+			return showing;
+		}
+
+		/**
+		 * @brief Get the order of the layer.
+		 * @return Z-order given to OverlayMsg::showLayer.
+		 */
+		public int getZOrder()
+		{
+			return zOrder;
+		}
+	}
+
+	/**
+	 * @class Style
+	 * @brief Immutable style shared by the messages.
+	 * @details The default style is read from the @b overlay_msg_default_* resources once
+	 * per configuration and shared by all the OverlayMsg objects. A customized style can be
+	 * created with OverlayMsg::createStyle and given to other objects.
+	 */
+	public static final class Style
+	{
+		/** @brief Default style of the last configuration. */
+		private static Style defaultStyle;
+		/** @brief Configuration of the default style. */
+		private static Configuration defaultConfiguration;
+		/** @brief Typefaces loaded from the assets, by path. */
+		private final static HashMap<String, Typeface> typefaces = new HashMap<String, Typeface>();
+		/** @brief Size of the font files of the loaded typefaces. */
+		private static long typefaceBytes;
+		/** @brief Border size in pixel. */
+		public final int borderSize;
+		/** @brief Text size in pixel. */
+		public final int textSize;
+		/** @brief Text margin in pixel. */
+		public final int textMargin;
+		/** @brief Text color. */
+		public final int textColor;
+		/** @brief Text background color. */
+		public final int textBackgroundColor;
+		/** @brief Background color. */
+		public final int backgroundColor;
+		/** @brief Border color. */
+		public final int borderColor;
+		/** @brief Use anti alias. */
+		public final boolean antiAlias;
+		/** @brief Show TextView background. */
+		public final boolean showTextBackground;
+		/** @brief TextView font, null for the default one. */
+		public final Typeface textFont;
+		/** @brief Show a message under text. */
+		public final boolean showPressToContinue;
+		/** @brief Press to continue text size. */
+		public final int pressToContinueTextSize;
+
+		/**
+		 * @brief Class constructor reading the default resources.
+		 * @param resources Resources of the application.
+		 */
+		private Style(Resources resources)
+		{
+			borderSize = resources.getDimensionPixelSize(R.dimen.overlay_msg_default_border_size);
+			textSize = resources.getDimensionPixelSize(R.dimen.overlay_msg_default_text_size);
+			textMargin = resources.getDimensionPixelSize(R.dimen.overlay_msg_default_text_margin);
+			textColor = resources.getColor(R.color.overlay_msg_default_text_color);
+			textBackgroundColor = resources.getColor(R.color.overlay_msg_default_text_background_color);
+			backgroundColor = resources.getColor(R.color.overlay_msg_default_background_color);
+			borderColor = resources.getColor(R.color.overlay_msg_default_border_color);
+			antiAlias = resources.getBoolean(R.bool.overlay_msg_default_use_antialias);
+			showTextBackground = resources.getBoolean(R.bool.overlay_msg_default_show_text_background);
+			showPressToContinue = resources.getBoolean(R.bool.overlay_msg_default_press_to_continue);
+			pressToContinueTextSize = resources.getDimensionPixelSize(R.dimen.overlay_msg_default_press_text_size);
+			textFont = null;
+		}
+
+		/**
+		 * @brief Class constructor copying the style fields of an object.
+		 * @param overlayMsg Object to copy.
+		 */
+		private Style(OverlayMsg overlayMsg)
+		{
+			borderSize = overlayMsg.borderSize;
+			textSize = overlayMsg.textSize;
+			textMargin = overlayMsg.textMargin;
+			textColor = overlayMsg.textColor;
+			textBackgroundColor = overlayMsg.textBackgroundColor;
+			backgroundColor = overlayMsg.backgroundColor;
+			borderColor = overlayMsg.borderColor;
+			antiAlias = overlayMsg.antiAlias;
+			showTextBackground = overlayMsg.showTextBackground;
+			textFont = overlayMsg.textFont;
+			showPressToContinue = overlayMsg.showPressToContinue;
+			pressToContinueTextSize = overlayMsg.pressToContinueTextSize;
+		}
+
+		/**
+		 * @brief Get the default style.
+		 * @param context Application context.
+		 * @return Style of the @b overlay_msg_default_* resources.
+		 * @details The resources are only read again when the configuration changes.
+		 */
+		public static synchronized Style getDefault(Context context)
+		{
+			Resources resources = context.getResources();
+			Configuration configuration = resources.getConfiguration();
+			if (defaultStyle == null || !configuration.equals(defaultConfiguration))
+			{
+				defaultStyle = new Style(resources);
+				defaultConfiguration = new Configuration(configuration);
+			}
+			return defaultStyle;
+		}
+
+		/**
+		 * @brief Get a typeface of the assets.
+		 * @param context Application context.
+		 * @param path Path of the font in the assets.
+		 * @return Typeface loaded at the first call and shared by the next ones.
+		 */
+		public static Typeface getTypeface(Context context, String path)
+		{
+			synchronized (typefaces)
+			{
+				Typeface typeface = typefaces.get(path);
+				if (typeface == null)
+				{
+					typeface = Typeface.createFromAsset(context.getAssets(), path);
+					typefaces.put(path, typeface);
+					typefaceBytes += getAssetBytes(context, path);
+				}
+				return typeface;
+			}
+		}
+
+		/**
+		 * @brief Get the size of the font files of the loaded typefaces.
+		 * @return Number of bytes.
+		 */
+		static long getTypefaceBytes()
+		{
+			synchronized (typefaces)
+			{
+				return typefaceBytes;
+			}
+		}
+
+		/**
+		 * @brief Forget the loaded typefaces.
+		 * @details The styles keep their typeface, the next calls of Style::getTypeface load them again.
+		 */
+		static void clearTypefaces()
+		{
+			synchronized (typefaces)
+			{
+				typefaces.clear();
+				typefaceBytes = 0;
+			}
+		}
+
+		/**
+		 * @brief Get the size of a file of the assets.
+		 * @param context Application context.
+		 * @param path Path of the file in the assets.
+		 * @return Number of bytes, 0 if the file can't be read.
+		 */
+		private static long getAssetBytes(Context context, String path)
+		{
+			InputStream input = null;
+			try
+			{
+				// The remaining length of an asset stream is the size of the file
+				input = context.getAssets().open(path);
+				return input.available();
+			}
+			catch (IOException e)
+			{
+				return 0;
+			}
+			finally
+			{
+				closeQuietly(input);
+			}
+		}
+	}
+
+	/**
+	 * @class SeenStore
+	 * @brief Messages already seen by the user, kept in a file.
+	 * @details The file is read in another thread at the first use, then the ids are
+	 * checked in memory. New ids are written in another thread, the writes of the next
+	 * second are merged in one write of the whole file.
+	 * Methods must be called from the main thread.
+	 */
+	public static class SeenStore
+	{
+		/** @brief Name of the file in the files directory of the application. */
+		private final static String FILE_NAME = "overlay_msg_seen.bin";
+		/** @brief Version of the file format. */
+		private final static int FILE_VERSION = 1;
+		/** @brief Delay merging the writes in milliseconds. */
+		private final static long FLUSH_DELAY = 1000;
+		/** @brief Store of the application. */
+		private static SeenStore instance;
+		/** @brief File of the store, only used in the io thread. */
+		private File file;
+		/** @brief Seen message ids. */
+		private final HashSet<String> ids = new HashSet<String>();
+		/** @brief Actions waiting for the end of the loading. */
+		private final ArrayList<Runnable> loadActions = new ArrayList<Runnable>();
+		/** @brief State at true when the file is read. */
+		private boolean loaded;
+		/** @brief State at true when ids are not written yet. */
+		private boolean dirty;
+		/** @brief State at true when a write is planned. */
+		private boolean flushScheduled;
+		/** @brief Write the ids after the delay. */
+		private final Runnable flushRunnable = new Runnable() {
+			public void run() {
+				flushScheduled = false;
+				flush();
+			}};
+
+		/**
+		 * @brief Class constructor, starts the loading.
+		 * @param applicationContext Application context.
+		 * @details The files directory is found in the io thread, it may create the directory.
+		 */
+		private SeenStore(final Context applicationContext)
+		{
+			getIoExecutor().execute(new Runnable() {
+				public void run() {
+					file = new File(applicationContext.getFilesDir(), FILE_NAME);
+					final HashSet<String> fileIds = read();
+					getMainHandler().post(new Runnable() {
+						public void run() {
+							onLoaded(fileIds);
+						}});
+				}});
+		}
+
+		/**
+		 * @brief Get the store of the application.
+		 * @param context Application context.
+		 * @return Store created at the first call.
+		 */
+		public static SeenStore get(Context context)
+		{
+			if (instance == null)
+				instance = new SeenStore(context.getApplicationContext());
+			return instance;
+		}
+
+		/**
+		 * @brief Know if the file is read.
+		 * @return True if OverlayMsg::SeenStore::isSeen gives the stored value.
+		 */
+		public boolean isLoaded()
+		{
+			return loaded;
+		}
+
+		/**
+		 * @brief Run an action when the file is read.
+		 * @param action Action run in the main thread, immediately if the file is already read.
+		 */
+		public void whenLoaded(Runnable action)
+		{
+			if (loaded)
+				action.run();
+			else
+				loadActions.add(action);
+		}
+
+		/**
+		 * @brief Know if a message was seen.
+		 * @param id Message id.
+		 * @return True if the message was seen, false if not or if the file is not read yet.
+		 */
+		public boolean isSeen(String id)
+		{
+			return ids.contains(id);
+		}
+
+		/**
+		 * @brief Mark a message as seen.
+		 * @param id Message id.
+		 */
+		public void markSeen(String id)
+		{
+			if (ids.add(id))
+				scheduleFlush();
+		}
+
+		/**
+		 * @brief Mark a message as not seen.
+		 * @param id Message id.
+		 */
+		public void forget(String id)
+		{
+			if (ids.remove(id))
+				scheduleFlush();
+		}
+
+		/**
+		 * @brief Mark all the messages as not seen.
+		 */
+		public void clear()
+		{
+			if (!ids.isEmpty())
+			{
+				ids.clear();
+				scheduleFlush();
+			}
+		}
+
+		/**
+		 * @brief Merge the ids of the file and run the waiting actions.
+		 * @param fileIds Ids read from the file.
+		 */
+		private void onLoaded(HashSet<String> fileIds)
+		{
+			ids.addAll(fileIds);
+			loaded = true;
+			if (dirty)
+				flush();
+			for (int i = 0; i < loadActions.size(); ++i)
+				loadActions.get(i).run();
+			loadActions.clear();
+		}
+
+		/**
+		 * @brief Plan a write of the ids.
+		 */
+		private void scheduleFlush()
+		{
+			dirty = true;
+			if (!flushScheduled)
+			{
+				flushScheduled = true;
+				getMainHandler().postDelayed(flushRunnable, FLUSH_DELAY);
+			}
+		}
+
+		/**
+		 * @brief Write a copy of the ids in another thread.
+		 * @details Nothing is written before the end of the loading, the ids of the file would be lost.
+		 */
+		private void flush()
+		{
+			if (!loaded || !dirty)
+				return;
+			dirty = false;
+			final String[] snapshot = ids.toArray(new String[ids.size()]);
+			getIoExecutor().execute(new Runnable() {
+				public void run() {
+					write(snapshot);
+				}});
+		}
+
+		/**
+		 * @brief Read the ids of the file.
+		 * @return Ids of the file, empty if the file does not exist or is invalid.
+		 */
+		private HashSet<String> read()
+		{
+			HashSet<String> fileIds = new HashSet<String>();
+			if (!file.exists())
+				return fileIds;
+			DataInputStream input = null;
+			try
+			{
+				input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+				if (input.readInt() == FILE_VERSION)
+				{
+					int count = input.readInt();
+					for (int i = 0; i < count; ++i)
+						fileIds.add(input.readUTF());
+				}
+			}
+			catch (IOException e)
+			{
+				// Invalid file, the messages will be shown again
+			}
+			finally
+			{
+				closeQuietly(input);
+			}
+			return fileIds;
+		}
+
+		/**
+		 * @brief Replace the file with the ids.
+		 * @param snapshot Ids to write.
+		 * @details The ids are written in a temporary file renamed at the end.
+		 */
+		private void write(String[] snapshot)
+		{
+			File tempFile = new File(file.getPath() + ".tmp");
+			DataOutputStream output = null;
+			try
+			{
+				output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+				output.writeInt(FILE_VERSION);
+				output.writeInt(snapshot.length);
+				for (String id : snapshot)
+					output.writeUTF(id);
+				output.close();
+				output = null;
+				if (!tempFile.renameTo(file))
+					tempFile.delete();
+			}
+			catch (IOException e)
+			{
+				tempFile.delete();
+			}
+			finally
+			{
+				closeQuietly(output);
+			}
+		}
+	}
+
+	/**
+	 * @class ScrimDiskCache
+	 * @brief Backgrounds of the asynchronous messages kept on the disk.
+	 * @details A background only depends on the size of the screen, the style and the
+	 * geometry of the items. Each background is stored with this key followed by the raw
+	 * pixels of the bitmap, the file is mapped in memory and copied in the bitmap without
+	 * decoding. The least recently used files are deleted when the cache exceeds its size.
+	 * The files are read in the render thread, written and deleted in the io thread: a file
+	 * appears at once, renamed at the end of its write.
+	 */
+	public static class ScrimDiskCache
+	{
+		/** @brief Default size of the cache in bytes, two ARGB_8888 backgrounds at 1440x2560. */
+		public final static long DEFAULT_MAX_BYTES = 32 * 1024 * 1024;
+		/** @brief First value of a file. */
+		private final static int FILE_MAGIC = 0x4F564D53;
+		/** @brief Version of the file format. */
+		private final static int FILE_VERSION = 1;
+		/** @brief Extension of the files. */
+		private final static String FILE_EXTENSION = ".scrim";
+		/** @brief Directory of the files. */
+		private final File directory;
+		/** @brief Size of the cache in bytes. */
+		private final long maxBytes;
+		/** @brief Size of the files measured at the last write, -1 before. */
+		private volatile long currentBytes = -1;
+
+		/**
+		 * @brief Class constructor.
+		 * @param directory Directory of the files, created at the first write.
+		 * @param maxBytes Size of the cache in bytes.
+		 * @details Nothing is read from the disk by the constructor.
+		 */
+		public ScrimDiskCache(File directory, long maxBytes)
+		{
+			this.directory = directory;
+			this.maxBytes = maxBytes;
+		}
+
+		/**
+		 * @brief Delete all the files in the io thread.
+		 */
+		public void clear()
+		{
+			getIoExecutor().execute(new Runnable() {
+				public void run() {
+					File[] files = directory.listFiles();
+					if (files == null)
+						return;
+					for (File file : files)
+						file.delete();
+					currentBytes = 0;
+				}});
+		}
+
+		/**
+		 * @brief Get the size of the files on the disk.
+		 * @return Number of bytes measured at the last write, -1 if nothing was written yet.
+		 * @details The files are not in memory, the disk is not read by this method.
+		 */
+		public long getCurrentBytes()
+		{
+			return currentBytes;
+		}
+
+		/**
+		 * @brief Build the key of a background.
+		 * @param width Width of the background.
+		 * @param height Height of the background.
+		 * @param config Configuration of the bitmap.
+		 * @param scale Reduction factor of the bitmap.
+		 * @param renderer Renderer with the style.
+		 * @param highlights Surrounded items.
+		 * @return Values identifying the background.
+		 */
+		static int[] buildKey(int width, int height, Bitmap.Config config, int scale, ScrimRenderer renderer, ArrayList<OverlayGeometry.Highlight> highlights)
+		{
+			int[] key = new int[9 + highlights.size() * 5];
+			key[0] = width;
+			key[1] = height;
+			key[2] = config.ordinal();
+			key[3] = scale;
+			key[4] = renderer.backgroundPaint.getColor();
+			key[5] = renderer.borderPaint.getColor();
+			key[6] = renderer.borderSize;
+			key[7] = renderer.backgroundPaint.isAntiAlias() ? 1 : 0;
+			key[8] = highlights.size();
+			int index = 9;
+			for (int i = 0; i < highlights.size(); ++i)
+			{
+				OverlayGeometry.Highlight highlight = highlights.get(i);
+				key[index++] = highlight.shape;
+				key[index++] = highlight.left;
+				key[index++] = highlight.top;
+				key[index++] = highlight.right;
+				key[index++] = highlight.bottom;
+			}
+			return key;
+		}
+
+		/**
+		 * @brief Copy a stored background in a bitmap.
+		 * @param key Key of the background.
+		 * @param bitmap Destination bitmap of the right size and configuration.
+		 * @return True if the background was found.
+		 */
+		boolean read(int[] key, Bitmap bitmap)
+		{
+			File file = getFile(key);
+			if (!file.exists())
+				return false;
+			RandomAccessFile input = null;
+			try
+			{
+				input = new RandomAccessFile(file, "r");
+				FileChannel channel = input.getChannel();
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+				if (!readHeader(buffer, key) || buffer.remaining() != getPixelBytes(bitmap))
+					return false;
+				bitmap.copyPixelsFromBuffer(buffer);
+				file.setLastModified(System.currentTimeMillis());
+				return true;
+			}
+			catch (IOException e)
+			{
+				return false;
+			}
+			finally
+			{
+				closeQuietly(input);
+			}
+		}
+
+		/**
+		 * @brief Store a copy of a background in the io thread.
+		 * @param key Key of the background.
+		 * @param bitmap Drawn background, it can be displayed while the copy is written.
+		 * @details The copy is a pooled bitmap, given back to the pool after the write.
+		 */
+		void writeCopy(final int[] key, Bitmap bitmap)
+		{
+			final Bitmap copy = bitmapPool.obtain(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig(), null);
+			// A pooled bitmap is cleared, the background is drawn over it without blending
+			new Canvas(copy).drawBitmap(bitmap, 0, 0, null);
+			getIoExecutor().execute(new Runnable() {
+				public void run() {
+					write(key, copy);
+					bitmapPool.release(copy);
+				}});
+		}
+
+		/**
+		 * @brief Store a background.
+		 * @param key Key of the background.
+		 * @param bitmap Drawn background.
+		 * @details The file is written through a memory mapping, then the oldest files are
+		 * deleted if the cache is too big.
+		 */
+		void write(int[] key, Bitmap bitmap)
+		{
+			if (!directory.isDirectory() && !directory.mkdirs())
+				return;
+			File file = getFile(key);
+			File tempFile = new File(directory, file.getName() + ".tmp");
+			int headerBytes = (3 + key.length) * 4;
+			long size = headerBytes + getPixelBytes(bitmap);
+			if (size > maxBytes)
+				return;
+			RandomAccessFile output = null;
+			try
+			{
+				output = new RandomAccessFile(tempFile, "rw");
+				output.setLength(size);
+				MappedByteBuffer buffer = output.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+				buffer.putInt(FILE_MAGIC);
+				buffer.putInt(FILE_VERSION);
+				buffer.putInt(key.length);
+				for (int i = 0; i < key.length; ++i)
+					buffer.putInt(key[i]);
+				bitmap.copyPixelsToBuffer(buffer);
+				buffer.force();
+				output.close();
+				output = null;
+				if (!tempFile.renameTo(file))
+					tempFile.delete();
+			}
+			catch (IOException e)
+			{
+				tempFile.delete();
+			}
+			finally
+			{
+				closeQuietly(output);
+			}
+			trim();
+		}
+
+		/**
+		 * @brief Check the header of a file.
+		 * @param buffer Content of the file.
+		 * @param key Expected key.
+		 * @return True if the file stores the background of the key.
+		 */
+		private static boolean readHeader(ByteBuffer buffer, int[] key)
+		{
+			if (buffer.remaining() < (3 + key.length) * 4)
+				return false;
+			if (buffer.getInt() != FILE_MAGIC || buffer.getInt() != FILE_VERSION || buffer.getInt() != key.length)
+				return false;
+			for (int i = 0; i < key.length; ++i)
+			{
+				if (buffer.getInt() != key[i])
+					return false;
+			}
+			return true;
+		}
+
+		/**
+		 * @brief Delete the least recently used files until the cache fits in its size.
+		 */
+		private void trim()
+		{
+			File[] files = directory.listFiles();
+			if (files == null)
+				return;
+			long totalBytes = 0;
+			for (File file : files)
+				totalBytes += file.length();
+			currentBytes = totalBytes;
+			if (totalBytes <= maxBytes)
+				return;
+			Arrays.sort(files, new Comparator<File>() {
+				public int compare(File file1, File file2) {
+					long time1 = file1.lastModified();
+					long time2 = file2.lastModified();
+					return time1 < time2 ? -1 : (time1 == time2 ? 0 : 1);
+				}});
+			for (int i = 0; i < files.length && totalBytes > maxBytes; ++i)
+			{
+				totalBytes -= files[i].length();
+				files[i].delete();
+			}
+			currentBytes = totalBytes;
+		}
+
+		/**
+		 * @brief Get the file of a background.
+		 * @param key Key of the background.
+		 * @return File named with a 64 bits hash of the key.
+		 */
+		private File getFile(int[] key)
+		{
+			// FNV-1a hash, the key is checked in the header
+			long hash = 0xcbf29ce484222325L;
+			for (int i = 0; i < key.length; ++i)
+			{
+				hash ^= key[i];
+				hash *= 0x100000001b3L;
+			}
+			return new File(directory, Long.toHexString(hash) + FILE_EXTENSION);
+		}
+
+		/**
+		 * @brief Get the size of the pixels of a bitmap.
+		 * @param bitmap Bitmap to measure.
+		 * @return Number of bytes.
+		 */
+		private static long getPixelBytes(Bitmap bitmap)
+		{
+			return (long)bitmap.getRowBytes() * bitmap.getHeight();
+		}
+	}
+
+	/**
+	 * @class ViewResolver
+	 * @brief Find the surrounded views of several messages in one traversal.
+	 * @details All the requested ids are searched together in a single walk of the main
+	 * layout instead of one findViewById per id. The views found are kept
+	 * and reused while they stay in the same hierarchy, so the steps of a walkthrough
+	 * are resolved once. Ids outside the main layout are searched in the whole window.
+	 */
+	public static class ViewResolver
+	{
+		/** @brief Resolved views by id. */
+		private final SparseArray<View> views = new SparseArray<View>();
+		/** @brief State of the ids of the current request, ID_SEARCHED or ID_FOUND. */
+		private final SparseIntArray requestedIds = new SparseIntArray();
+		/** @brief Id searched by the traversal. */
+		private final static int ID_SEARCHED = 1;
+		/** @brief Id already resolved. */
+		private final static int ID_FOUND = 2;
+		/** @brief Number of ids not found yet. */
+		private int remaining;
+
+		/**
+		 * @brief Find the views of a message.
+		 * @param root Main layout.
+		 * @param ids Array of items id.
+		 * @param result Array receiving the views, at least as long as @b ids.
+		 * @throws IllegalArgumentException If some ids are not in the window, all of them are listed.
+		 */
+		public void resolve(ViewGroup root, int[] ids, View[] result)
+		{
+			prefetch(root, ids);
+			StringBuilder missing = null;
+			for (int i = 0; i < ids.length; ++i)
+			{
+				View view = views.get(ids[i]);
+				if (view == null)
+				{
+					if (missing == null)
+						missing = new StringBuilder();
+					else
+						missing.append(", ");
+					appendId(missing, root, ids[i]);
+				}
+				result[i] = view;
+			}
+			if (missing != null)
+				throw new IllegalArgumentException("Views not found: " + missing);
+		}
+
+		/**
+		 * @brief Find the views of several messages in one traversal.
+		 * @param root Main layout.
+		 * @param idArrays Arrays of items id.
+		 * @details The views not found are only reported by ViewResolver::resolve.
+		 */
+		public void prefetch(ViewGroup root, int[]... idArrays)
+		{
+			View rootView = root.getRootView();
+			requestedIds.clear();
+			remaining = 0;
+			for (int[] ids : idArrays)
+			{
+				for (int i = 0; i < ids.length; ++i)
+				{
+					int id = ids[i];
+					if (requestedIds.get(id, 0) != 0)
+						continue;
+					if (isInHierarchy(views.get(id), id, rootView))
+						requestedIds.put(id, ID_FOUND);
+					else
+					{
+						views.remove(id);
+						requestedIds.put(id, ID_SEARCHED);
+						++remaining;
+					}
+				}
+			}
+			if (remaining > 0 && !collect(root) && rootView != null && rootView != root)
+				collect(rootView);
+		}
+
+		/**
+		 * @brief Forget the resolved views.
+		 */
+		public void clear()
+		{
+			views.clear();
+			requestedIds.clear();
+		}
+
+		/**
+		 * @brief Store the requested views of a hierarchy.
+		 * @param view Root of the hierarchy.
+		 * @return True when all the requested ids are found.
+		 * @details Views are visited in the order of findViewById, the first view with an id wins.
+		 */
+		private boolean collect(View view)
+		{
+			int id = view.getId();
+			if (id != View.NO_ID && requestedIds.get(id, 0) == ID_SEARCHED)
+			{
+				views.put(id, view);
+				requestedIds.put(id, ID_FOUND);
+				if (--remaining == 0)
+					return true;
+			}
+			if (view instanceof ViewGroup)
+			{
+				ViewGroup group = (ViewGroup)view;
+				int count = group.getChildCount();
+				for (int i = 0; i < count; ++i)
+				{
+					if (collect(group.getChildAt(i)))
+						return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * @brief Check if a resolved view can be reused.
+		 * @param view Resolved view, can be null.
+		 * @param id Requested id.
+		 * @param rootView Root of the window.
+		 * @return True if the view still has this id and is still in the window.
+		 */
+		private static boolean isInHierarchy(View view, int id, View rootView)
+		{
+			if (view == null || view.getId() != id)
+				return false;
+			if (view == rootView)
+				return true;
+			for (ViewParent parent = view.getParent(); parent != null; parent = parent.getParent())
+			{
+				if (parent == rootView)
+					return true;
+			}
+			return false;
+		}
+
+		/**
+		 * @brief Write an id with its resource name for an error message.
+		 * @param builder Error message.
+		 * @param root Main layout.
+		 * @param id Missing id.
+		 */
+		private static void appendId(StringBuilder builder, View root, int id)
+		{
+			builder.append("0x").append(Integer.toHexString(id));
+			try
+			{
+				builder.append(" (").append(root.getResources().getResourceEntryName(id)).append(')');
+			}
+			catch (Resources.NotFoundException e)
+			{
+				// Id created in the code
+			}
+		}
+	}
+
+	/** @brief Top position constant used for placement of text. */
+	public final static int POSITION_TOP = 0;
+	/** @brief Center position constant used for placement of text. */
+	public final static int POSITION_CENTER = 1;
+	/** @brief Bottom position constant used for placement of text. */
+	public final static int POSITION_BOTTOM = 2;
+	/** @brief Shape circle for multiple items. */
+	public final static int SHAPE_CIRCLE = OverlayGeometry.SHAPE_CIRCLE;
+	/** @brief Shape rectangle for multiple items. */
+	public final static int SHAPE_RECTANGLE = OverlayGeometry.SHAPE_RECTANGLE;
+	/** @brief Quality storing the background in a color bitmap. */
+	public final static int QUALITY_ARGB_8888 = 0;
+	/** @brief Quality storing the background as an alpha mask tinted at draw time. */
+	public final static int QUALITY_ALPHA_8 = 1;
+	/** @brief Render mode drawing the background in a bitmap. */
+	public final static int RENDER_MODE_BITMAP = 0;
+	/** @brief Render mode drawing the background directly in the overlay view. */
+	public final static int RENDER_MODE_DIRECT = 1;
+	/** @brief Key of the main layout id in a saved state. */
+	private final static String KEY_STATE_LAYOUT = "overlay_msg_layout";
+	/** @brief Key of the items id in a saved state. */
+	private final static String KEY_STATE_IDS = "overlay_msg_ids";
+	/** @brief Key of the shapes in a saved state, missing for a big rectangle. */
+	private final static String KEY_STATE_SHAPES = "overlay_msg_shapes";
+	/** @brief Key of the message in a saved state. */
+	private final static String KEY_STATE_MSG = "overlay_msg_msg";
+	/** @brief Key of the position in a saved state. */
+	private final static String KEY_STATE_POSITION = "overlay_msg_position";
+	/** @brief Key of the style in a saved state. */
+	private final static String KEY_STATE_STYLE = "overlay_msg_style";
+	/** @brief Key of the walkthrough step in a saved state. */
+	private final static String KEY_STATE_STEP = "overlay_msg_step";
+	/** @brief Duration of the fades in milliseconds. */
+	private final static long FADE_DURATION = 150;
+	/** @brief Default duration of the move of the holes between two steps in milliseconds. */
+	private final static long MORPH_DURATION = 300;
+	/** @brief Transfer mode used to make holes. */
+	private final static PorterDuffXfermode clearMode = new PorterDuffXfermode(PorterDuff.Mode.CLEAR);
+	/** @brief Pool shared by all the messages. */
+	private final static BitmapPool bitmapPool = new BitmapPool(BitmapPool.DEFAULT_MAX_BYTES);
+	/** @brief Text layouts shared by all the messages. */
+	private final static TextLayoutCache textLayoutCache = new TextLayoutCache(TextLayoutCache.DEFAULT_MAX_ENTRIES);
+	/** @brief Thread drawing the backgrounds of asynchronous messages. */
+	private static ExecutorService renderExecutor;
+	/** @brief Thread reading and writing the files. */
+	private static ExecutorService ioExecutor;
+	/** @brief Handler of the main thread. */
+	private static Handler mainHandler;
+	/** @brief Listener reporting the cost of the messages, null if not measured. */
+	private static MetricsListener metricsListener;
+	/** @brief Disk cache of the asynchronous backgrounds, null if not used. */
+	private static volatile ScrimDiskCache scrimDiskCache;
+	/** @brief Byte budget shared by the bitmap pool and the text layouts. */
+	private static long memoryBudget = BitmapPool.DEFAULT_MAX_BYTES;
+	/** @brief The budget was set by OverlayMsg::setMemoryBudget. */
+	private static boolean memoryBudgetSet;
+	/** @brief The memory callbacks are registered in the application. */
+	private static boolean memoryCallbacksRegistered;
+	/** @brief Application activity. */
+	private Activity activity;
+	/** 
+	 * @brief Border size in pixel.
+	 * @details The default value is defined by @b R.dimen.overlay_msg_default_border_size. 
+	 */
+	public int borderSize;
+	/** 
+	 * @brief Text size in pixel.
+	 * @details The default value is defined by @b R.dimen.overlay_msg_default_text_size. 
+	 */
+	public int textSize;
+	/** 
+	 * @brief Text margin in pixel.
+	 * @details The default value is defined by @b R.dimen.overlay_msg_default_text_margin. 
+	 */
+	public int textMargin;
+	/**
+	 * @brief Text color
+	 * @details The default value is defined by @b R.color.overlay_msg_default_text_color.
+	 */
+	public int textColor;
+	/**
+	 * @brief Text background color
+	 * @details The default value is defined by @b R.color.overlay_msg_default_text_background_color.
+	 */
+	public int textBackgroundColor;
+	/**
+	 * @brief Background color
+	 * @details The default value is defined by @b R.color.overlay_msg_default_background_color.
+	 */
+	public int backgroundColor;
+	/**
+	 * @brief Border color
+	 * @details The default value is defined by @b R.color.overlay_msg_default_border_color.
+	 */
+	public int borderColor;
+	/**
+	 * @brief Use anti alias.
+	 * @details The default value is defined by @b R.bool.overlay_msg_default_use_antialias.
+	 */
+	public boolean antiAlias;
+	/**
+	 * @brief Show TextView background
+	 * @details The default value is defined by @b R.bool.overlay_msg_default_show_text_background.
+	 */
+	public boolean showTextBackground;
+	/**
+	 * @brief TextView font
+	 */
+	public Typeface textFont;
+	/**
+	 * @brief Show a message under text.
+	 */
+	public boolean showPressToContinue;
+	/**
+	 * @brief Press to continue text size.
+	 */
+	public int pressToContinueTextSize;
+	/**
+	 * @brief Render mode of the background.
+	 * @details The @b renderMode field is defined by :
+	 * - OverlayMsg::RENDER_MODE_BITMAP, the background is drawn once in a bitmap,
+	 * - OverlayMsg::RENDER_MODE_DIRECT, the background is drawn by the overlay view at each frame without bitmap.
+	 */
+	public int renderMode;
+	/**
+	 * @brief Storage of the background bitmap.
+	 * @details The @b quality field is defined by :
+	 * - OverlayMsg::QUALITY_ARGB_8888, 4 bytes per pixel,
+	 * - OverlayMsg::QUALITY_ALPHA_8, 1 byte per pixel, the borders are drawn over the mask.
+	 */
+	public int quality;
+	/**
+	 * @brief Reduction factor of the background bitmap.
+	 * @details With a value of 2 or 4, the bitmap is drawn at 1/2 or 1/4 of the screen
+	 * size and stretched when displayed.
+	 */
+	public int bitmapScale;
+	/**
+	 * @brief Follow the surrounded items when they move.
+	 * @details When true, the position of the items is checked before each frame and
+	 * only the parts of the background that changed are drawn again.
+	 */
+	public boolean trackTargets;
+	/**
+	 * @brief Let the touches in the holes reach the surrounded views.
+	 * @details When true, a press in a hole is given to the view under the overlay and does
+	 * not close the message, e.g. for a "press this button to continue" message. The
+	 * message is closed by OverlayMsg::hideCurrentMessage or by a press outside the holes.
+	 */
+	public boolean touchThroughHoles;
+	/**
+	 * @brief Listener reporting the duration and the dropped frames of the fades, can be null.
+	 */
+	public TransitionListener transitionListener;
+	/**
+	 * @brief Manager of the messages of the activity.
+	 */
+	private final Manager manager;
+	
+	/**
+	 * @brief Class constructor.
+	 * @param applicationActivity Application activity
+	 * @details Initializes all default values from the shared default style.
+	 */
+	public OverlayMsg(Activity applicationActivity)
+	{
+		this(applicationActivity, Style.getDefault(applicationActivity));
+	}
+
+	/**
+	 * @brief Class constructor with a shared style.
+	 * @param applicationActivity Application activity
+	 * @param style Style of the messages.
+	 * @details No resource is read, the style fields are initialized from @b style.
+	 */
+	public OverlayMsg(Activity applicationActivity, Style style)
+	{
+		activity = applicationActivity;
+		manager = Manager.get(activity);
+		registerMemoryCallbacks(activity);
+		setStyle(style);
+		renderMode = RENDER_MODE_BITMAP;
+		quality = QUALITY_ARGB_8888;
+		bitmapScale = 1;
+		trackTargets = false;
+		touchThroughHoles = false;
+		transitionListener = null;
+	}
+	
+	/**
+	 * @brief Apply a style to this object.
+	 * @param style Style of the messages.
+	 */
+	public void setStyle(Style style)
+	{
+		borderSize = style.borderSize;
+		textSize = style.textSize;
+		textMargin = style.textMargin;
+		textColor = style.textColor;
+		textBackgroundColor = style.textBackgroundColor;
+		backgroundColor = style.backgroundColor;
+		borderColor = style.borderColor;
+		antiAlias = style.antiAlias;
+		showTextBackground = style.showTextBackground;
+		textFont = style.textFont;
+		showPressToContinue = style.showPressToContinue;
+		pressToContinueTextSize = style.pressToContinueTextSize;
+	}
+
+	/**
+	 * @brief Create a style from the fields of this object.
+	 * @return Immutable style that can be shared with other OverlayMsg objects.
+	 */
+	public Style createStyle()
+	{
+		return new Style(this);
+	}
+
+	/**
+	 * @brief Displays a message with an item surrounded by a circle.
+	 * @param globalLayoutId Id of the main layout.
+	 * @param viewToSurround View that will be surrounded.
+	 * @param msg Message to show.
+	 * @param position Position of the text on the screen.
+	 * @param overlayEvent Event called at the end of the display.
+	 * @details 
+	 * The @b globalLayoutId parameter must refer to a FrameLayout.\n
+	 * The @b position parameter is defined by : 
+	 * - OverlayMsg::POSITION_TOP,
+	 * - OverlayMsg::POSITION_CENTER,
+	 * - OverlayMsg::POSITION_BOTTOM.
+	 */
+	public void showTextWithCircle(int globalLayoutId, int viewToSurround, String msg, int position, final OverlayMsg.Event overlayEvent)
+	{
+		showTextWithSingle(globalLayoutId, viewToSurround, SHAPE_CIRCLE, msg, position, overlayEvent);
+	}
+	
+	/**
+	 * @brief Displays a message with an item surrounded by a rectangle.
+	 * @param globalLayoutId Id of the main layout.
+	 * @param viewToSurround View that will be surrounded.
+	 * @param msg Message to show.
+	 * @param position Position of the text on the screen.
+	 * @param overlayEvent Event called at the end of the display.
+	 * @details 
+	 * The @b globalLayoutId parameter must refer to a FrameLayout.\n
+	 * The @b position parameter is defined by : 
+	 * - OverlayMsg::POSITION_TOP,
+	 * - OverlayMsg::POSITION_CENTER,
+	 * - OverlayMsg::POSITION_BOTTOM.
+	 */
+	public void showTextWithRect(int globalLayoutId, int viewToSurround, String msg, int position, final OverlayMsg.Event overlayEvent)
+	{
+		showTextWithSingle(globalLayoutId, viewToSurround, SHAPE_RECTANGLE, msg, position, overlayEvent);
+	}
+
+	/**
+	 * @brief Displays a message with an item surrounded by a shape.
+	 * @param globalLayoutId Id of the main layout.
+	 * @param viewToSurround View that will be surrounded.
+	 * @param shape Shape of the item.
+	 * @param msg Message to show.
+	 * @param position Position of the text on the screen.
+	 * @param overlayEvent Event called at the end of the display.
+	 * @details The id and the shape are stored in the arrays of the recycled layout.
+	 */
+	private void showTextWithSingle(int globalLayoutId, int viewToSurround, int shape, String msg, int position, OverlayMsg.Event overlayEvent)
+	{
+		OverlayView layout = createOverlayLayout();
+		layout.singleId[0] = viewToSurround;
+		layout.singleShape[0] = shape;
+		showLayout(layout, globalLayoutId, layout.singleId, layout.singleShape, msg, position, overlayEvent);
+	}
+	
+	/**
+	 * @brief Displays a message with 2 items surrounded by a rectangle.
+	 * @param globalLayoutId Id of the main layout.
+	 * @param viewToSurround1 First view that will be surrounded.
+	 * @param viewToSurround2 Second view that will be surrounded.
+	 * @param msg Message to show.
+	 * @param position Position of the text on the screen.
+	 * @param overlayEvent Event called at the end of the display.
+	 * @details 
+	 * The @b globalLayoutId parameter must refer to a FrameLayout.\n
+	 * The @b position parameter is defined by : 
+	 * - OverlayMsg::POSITION_TOP,
+	 * - OverlayMsg::POSITION_CENTER,
+	 * - OverlayMsg::POSITION_BOTTOM.
+	 */
+	public void showTextWithBigRect(int globalLayoutId, int viewToSurround1, int viewToSurround2, String msg, int position, final OverlayMsg.Event overlayEvent)
+	{
+		OverlayView layout = createOverlayLayout();
+		layout.pairIds[0] = viewToSurround1;
+		layout.pairIds[1] = viewToSurround2;
+		showLayout(layout, globalLayoutId, layout.pairIds, null, msg, position, overlayEvent);
+	}
+
+	/**
+	 * @brief Displays a message built by a Spec.Builder.
+	 * @param spec Message to show.
+	 * @param overlayEvent Event called at the end of the display.
+	 * @details The style of the spec, if any, is applied to this object. The parameters are
+	 * not checked again.
+	 * @throws IllegalArgumentException If some items are not found.
+	 */
+	public void show(Spec spec, final OverlayMsg.Event overlayEvent)
+	{
+		if (spec.style != null)
+			setStyle(spec.style);
+		showLayout(createOverlayLayout(), spec.globalLayoutId, spec.viewToSurroundArray, spec.shapeArray, spec.msg, spec.position, overlayEvent);
+	}
+
+	/**
+	 * @brief Displays a message over the background shared by the layers.
+	 * @param spec Message to show.
+	 * @param zOrder Order of the layer, the highest is on top.
+	 * @param overlayEvent Event called when the layer is closed.
+	 * @return Layer of the message.
+	 * @details The layers of the activity are displayed together over one background with
+	 * the holes of all the layers, so the screen is darkened once. A press on the message
+	 * of a layer closes it, a press on the background closes the top layer. The background
+	 * uses the style of the object showing the first layer, the messages their own style.
+	 * The layers do not replace the message displayed by the other methods.
+	 * @throws IllegalArgumentException If some items are not found.
+	 */
+	public Layer showLayer(Spec spec, int zOrder, OverlayMsg.Event overlayEvent)
+	{
+		if (spec.style != null)
+			setStyle(spec.style);
+		final FrameLayout globalLayout = (FrameLayout)activity.findViewById(spec.globalLayoutId);
+		OverlayView stackLayout = manager.stackLayout;
+		// A closing background ends its fade out at once, the event of the last layer is
+		// called, a new background fades in
+		if (stackLayout != null && stackLayout.closing)
+		{
+			if (stackLayout.fade != null)
+				stackLayout.fade.finish();
+			if (manager.stackLayout == stackLayout)
+				manager.remove(stackLayout);
+			stackLayout = manager.stackLayout;
+		}
+		boolean created = stackLayout == null;
+		if (created)
+		{
+			stackLayout = manager.obtainLayout(this);
+			stackLayout.messageLayout.setVisibility(View.GONE);
+		}
+		final Layer layer = new Layer(this, zOrder, overlayEvent);
+		int first = stackLayout.highlights.size();
+		if (spec.shapeArray == null)
+			addBigRect(stackLayout, globalLayout, spec.viewToSurroundArray);
+		else
+			addHighlights(stackLayout, globalLayout, spec.viewToSurroundArray, spec.shapeArray);
+		layer.takeItems(stackLayout, first);
+		bindMessageLayout(layer.messageLayout, spec.msg, spec.position);
+		layer.messageLayout.setOnClickListener(new OnClickListener() {
+			public void onClick(View v) {
+				layer.dismiss();
+			}});
+		// The message layout of the overlay layout stays the first child
+		stackLayout.addView(layer.messageLayout, manager.insertLayer(layer) + 1);
+		stackLayout.owner.renderLayers(stackLayout, globalLayout);
+		if (created)
+		{
+			stackLayout.setOnClickListener(new OnClickListener() {
+				public void onClick(View v) {
+					if (!manager.layers.isEmpty())
+						manager.layers.get(manager.layers.size() - 1).dismiss();
+				}});
+			// Published once the items are found
+			manager.stackLayout = stackLayout;
+			globalLayout.addView(stackLayout);
+			setFadeIn(stackLayout);
+		}
+		return layer;
+	}
+
+	/**
+	 * @brief Close a layer.
+	 * @param layer Displayed layer.
+	 */
+	private void dismissLayer(final Layer layer)
+	{
+		final OverlayView stackLayout = manager.stackLayout;
+		if (!layer.showing || stackLayout == null)
+			return;
+		manager.layers.remove(layer);
+		layer.showing = false;
+		stackLayout.removeView(layer.messageLayout);
+		if (!manager.layers.isEmpty())
+		{
+			stackLayout.owner.renderLayers(stackLayout, (FrameLayout)stackLayout.getParent());
+			if (layer.overlayEvent != null)
+				layer.overlayEvent.event();
+			return;
+		}
+		stackLayout.closing = true;
+		new Fade(stackLayout, false, new Runnable() {
+			public void run() {
+				manager.remove(stackLayout);
+				if (layer.overlayEvent != null)
+					layer.overlayEvent.event();
+			}}).start();
+	}
+
+	/**
+	 * @brief Draw the background of the layers.
+	 * @param stackLayout Overlay layout of the layers.
+	 * @param globalLayout Main layout.
+	 * @details The items of the layers are merged in the z-order and drawn in one pass.
+	 * The bitmap of the background is reused while the layers change.
+	 */
+	private void renderLayers(OverlayView stackLayout, FrameLayout globalLayout)
+	{
+		stackLayout.highlights.clear();
+		stackLayout.targets.clear();
+		stackLayout.endTargets.clear();
+		for (int i = 0; i < manager.layers.size(); ++i)
+		{
+			Layer layer = manager.layers.get(i);
+			for (int j = 0; j < layer.highlights.size(); ++j)
+				stackLayout.addHighlight(layer.highlights.get(j), layer.targets.get(j), layer.endTargets.get(j));
+		}
+		if (renderMode == RENDER_MODE_BITMAP)
+		{
+			Bitmap bitmap = stackLayout.bitmap;
+			if (bitmap == null)
+				bitmap = createBitmap(globalLayout, null);
+			else
+				bitmap.eraseColor(0x00000000);
+			applyStyleToRenderer();
+			manager.renderer.render(manager.bitmapCanvas, bitmap, globalLayout.getWidth(), globalLayout.getHeight(), getBitmapScale(), stackLayout.highlights);
+			if (stackLayout.bitmap == null)
+				setLayoutBitmap(stackLayout, bitmap, quality == QUALITY_ALPHA_8 ? new ScrimRenderer(manager.renderer) : null);
+		}
+		stackLayout.invalidate();
+	}
+
+	/**
+	 * @brief Display an overlay layout with checked parameters.
+	 * @param layout Overlay layout.
+	 * @param globalLayoutId Id of the main layout.
+	 * @param viewToSurroundArray Array of items id, the 2 corners for a big rectangle.
+	 * @param shapeArray Array of corresponding shape, null for a big rectangle.
+	 * @param msg Message to show.
+	 * @param position Position of the text on the screen.
+	 * @param overlayEvent Event called at the end of the display.
+	 * @details An asynchronous message that is not displayed yet is cancelled.
+	 */
+	private void showLayout(OverlayView layout, int globalLayoutId, int[] viewToSurroundArray, int[] shapeArray, String msg, int position, OverlayMsg.Event overlayEvent)
+	{
+		manager.cancelPendingShow();
+		final FrameLayout globalLayout = (FrameLayout)activity.findViewById(globalLayoutId);
+		if (shapeArray == null)
+			addBigRect(layout, globalLayout, viewToSurroundArray);
+		else
+			addHighlights(layout, globalLayout, viewToSurroundArray, shapeArray);
+		layout.setSpec(globalLayoutId, viewToSurroundArray, shapeArray, msg, position);
+		prepareOverlayLayout(layout, globalLayout, msg, position);
+		showOverlayLayout(globalLayout, layout, overlayEvent);
+	}
+
+	
+	/**
+	 * @brief Displays multiple items surrounded by a choosen shape .
+	 * @param globalLayoutId Id of the main layout.
+	 * @param viewToSurroundArray Array of items id.
+	 * @param shapeArray Array of corresponding shape.
+	 * @param msg Message to show.
+	 * @param position Position of the text on the screen.
+	 * @param overlayEvent Event called at the end of the display.
+	 * The @b globalLayoutId parameter must refer to a FrameLayout.\n
+	 * The @b shapeArray parameter is defined by : 
+	 *  - OverlayMsg::SHAPE_CIRCLE,
+	 *  - OverlayMsg::SHAPE_RECTANGLE.
+	 * The @b position parameter is defined by : 
+	 * - OverlayMsg::POSITION_TOP,
+	 * - OverlayMsg::POSITION_CENTER,
+	 * - OverlayMsg::POSITION_BOTTOM.
+	 */
+	public void showTextWithMultiple(int globalLayoutId, int[] viewToSurroundArray, int[] shapeArray, String msg, int position, final OverlayMsg.Event overlayEvent)
+	{
+		int length = viewToSurroundArray.length;
+		if (shapeArray.length == length)
+			showLayout(createOverlayLayout(), globalLayoutId, viewToSurroundArray, shapeArray, msg, position, overlayEvent);
+	}
+
+	/**
+	 * @brief Displays multiple items surrounded by a choosen shape, the background is drawn in another thread.
+	 * @param globalLayoutId Id of the main layout.
+	 * @param viewToSurroundArray Array of items id.
+	 * @param shapeArray Array of corresponding shape.
+	 * @param msg Message to show.
+	 * @param position Position of the text on the screen.
+	 * @param overlayEvent Event called at the end of the display.
+	 * @param showListener Listener called when the message is drawn for the first time, can be null.
+	 * @details
+	 * Parameters are defined as in OverlayMsg::showTextWithMultiple.\n
+	 * The position of the items is read immediately, only the background bitmap is drawn
+	 * in another thread. OverlayMsg::hideCurrentMessage cancels a message that is not displayed yet.
+	 */
+	public void showTextWithMultipleAsync(int globalLayoutId, int[] viewToSurroundArray, int[] shapeArray, String msg, int position, final OverlayMsg.Event overlayEvent, final OverlayMsg.ShowListener showListener)
+	{
+		int length = viewToSurroundArray.length;
+		if (shapeArray.length == length)
+		{
+			manager.cancelPendingShow();
+			final FrameLayout globalLayout = (FrameLayout)activity.findViewById(globalLayoutId);
+			OverlayView layout = createOverlayLayout();
+			addHighlights(layout, globalLayout, viewToSurroundArray, shapeArray);
+			layout.setSpec(globalLayoutId, viewToSurroundArray, shapeArray, msg, position);
+			bindMessageLayout(layout, msg, position);
+			if (renderMode == RENDER_MODE_BITMAP)
+			{
+				applyStyleToRenderer();
+				prepareMessagesForWidth(globalLayout.getWidth(), new String[] { msg });
+				AsyncShow asyncShow = new AsyncShow(globalLayout, layout, overlayEvent, showListener);
+				manager.setPendingShow(asyncShow);
+				asyncShow.future = getRenderExecutor().submit(asyncShow);
+			}
+			else
+				showAsyncLayout(globalLayout, layout, overlayEvent, showListener);
+		}
+	}
+
+	/**
+	 * @brief Save the message displayed in the activity.
+	 * @param outState State given to @b onSaveInstanceState.
+	 * @details The ids of the items, the message, its position, the style and the step of
+	 * a walkthrough are saved as a few values. The font is not saved.
+	 */
+	public void saveState(Bundle outState)
+	{
+		OverlayView layout = manager.currentLayout;
+		if (layout == null || layout.closing || layout.specIds == null)
+			return;
+		outState.putInt(KEY_STATE_LAYOUT, layout.specGlobalLayoutId);
+		// The arrays of a single item are reused by the next messages
+		outState.putIntArray(KEY_STATE_IDS, layout.specIds.clone());
+		if (layout.specShapes != null)
+			outState.putIntArray(KEY_STATE_SHAPES, layout.specShapes.clone());
+		outState.putString(KEY_STATE_MSG, layout.specMsg);
+		outState.putInt(KEY_STATE_POSITION, layout.specPosition);
+		outState.putIntArray(KEY_STATE_STYLE, layout.owner.getStyleState());
+		if (layout.step >= 0)
+			outState.putInt(KEY_STATE_STEP, layout.step);
+	}
+
+	/**
+	 * @brief Display again the message saved by OverlayMsg::saveState.
+	 * @param savedState State given to @b onCreate or @b onRestoreInstanceState, can be null.
+	 * @param overlayEvent Event called at the end of the display.
+	 * @return True if a message was saved and will be displayed.
+	 * @details The saved style is applied to this object, except the font. The message is
+	 * displayed at the first layout pass of the main layout. The step of a walkthrough is
+	 * restored by Walkthrough::restoreState.
+	 */
+	public boolean restoreState(Bundle savedState, final OverlayMsg.Event overlayEvent)
+	{
+		if (savedState == null || !savedState.containsKey(KEY_STATE_IDS) || savedState.containsKey(KEY_STATE_STEP))
+			return false;
+		final int globalLayoutId = savedState.getInt(KEY_STATE_LAYOUT);
+		final int[] ids = savedState.getIntArray(KEY_STATE_IDS);
+		final int[] shapes = savedState.getIntArray(KEY_STATE_SHAPES);
+		final String msg = savedState.getString(KEY_STATE_MSG);
+		final int position = savedState.getInt(KEY_STATE_POSITION);
+		applyStyleState(savedState.getIntArray(KEY_STATE_STYLE));
+		showWhenLaidOut(globalLayoutId, new Runnable() {
+			public void run() {
+				if (shapes == null)
+					showTextWithBigRect(globalLayoutId, ids[0], ids[1], msg, position, overlayEvent);
+				else
+					showTextWithMultiple(globalLayoutId, ids, shapes, msg, position, overlayEvent);
+			}});
+		return true;
+	}
+
+	/**
+	 * @brief Pack the style fields.
+	 * @return Values of the style fields, without the font.
+	 */
+	private int[] getStyleState()
+	{
+		return new int[] { borderSize, textSize, textMargin, textColor, textBackgroundColor, backgroundColor, borderColor,
+				antiAlias ? 1 : 0, showTextBackground ? 1 : 0, showPressToContinue ? 1 : 0, pressToContinueTextSize,
+				renderMode, quality, bitmapScale, trackTargets ? 1 : 0, touchThroughHoles ? 1 : 0 };
+	}
+
+	/**
+	 * @brief Apply packed style fields.
+	 * @param state Values given by OverlayMsg::getStyleState, ignored if null.
+	 */
+	private void applyStyleState(int[] state)
+	{
+		if (state == null || state.length != 16)
+			return;
+		borderSize = state[0];
+		textSize = state[1];
+		textMargin = state[2];
+		textColor = state[3];
+		textBackgroundColor = state[4];
+		backgroundColor = state[5];
+		borderColor = state[6];
+		antiAlias = state[7] != 0;
+		showTextBackground = state[8] != 0;
+		showPressToContinue = state[9] != 0;
+		pressToContinueTextSize = state[10];
+		renderMode = state[11];
+		quality = state[12];
+		bitmapScale = state[13];
+		trackTargets = state[14] != 0;
+		touchThroughHoles = state[15] != 0;
+	}
+
+	/**
+	 * @brief Update a displayed message after a change of the size of the main layout.
+	 * @param layout Overlay layout.
+	 * @param width New width.
+	 * @param height New height.
+	 * @details The geometry of the items is read again and the background is drawn once
+	 * at the new size, in the same bitmap when its memory is big enough.
+	 */
+	private void resizeOverlayLayout(OverlayView layout, int width, int height)
+	{
+		layout.updateHighlights();
+		if (layout.bitmap != null)
+		{
+			Bitmap bitmap = resizeBitmap(layout.bitmap, width, height);
+			applyStyleToRenderer();
+			manager.renderer.render(manager.bitmapCanvas, bitmap, width, height, getBitmapScale(), layout.highlights);
+			if (bitmap != layout.bitmap)
+			{
+				Bitmap oldBitmap = layout.bitmap;
+				setLayoutBitmap(layout, bitmap, quality == QUALITY_ALPHA_8 ? new ScrimRenderer(manager.renderer) : null);
+				bitmapPool.release(oldBitmap);
+			}
+		}
+		layout.invalidate();
+	}
+
+	/**
+	 * @brief Get a bitmap for a new size of the background.
+	 * @param bitmap Current bitmap.
+	 * @param width Width of the background.
+	 * @param height Height of the background.
+	 * @return The current bitmap reconfigured if possible, a bitmap of the pool otherwise.
+	 * @details From Android 4.4, a bitmap can change its size without a new allocation.
+	 */
+	@SuppressLint("NewApi")
+	private Bitmap resizeBitmap(Bitmap bitmap, int width, int height)
+	{
+		int scale = getBitmapScale();
+		int bitmapWidth = (width + scale - 1) / scale;
+		int bitmapHeight = (height + scale - 1) / scale;
+		Bitmap.Config config = bitmap.getConfig();
+		if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.KITKAT)
+		{
+			int bytesPerPixel = config == Bitmap.Config.ALPHA_8 ? 1 : 4;
+			if ((long)bitmapWidth * bitmapHeight * bytesPerPixel <= bitmap.getAllocationByteCount())
+			{
+				bitmap.reconfigure(bitmapWidth, bitmapHeight, config);
+				bitmap.eraseColor(0x00000000);
+				return bitmap;
+			}
+		}
+		return bitmapPool.obtain(bitmapWidth, bitmapHeight, config);
+	}
+
+	/**
+	 * @brief Show a message when the main layout is laid out.
+	 * @param globalLayoutId Id of the main layout.
+	 * @param show Action showing the message, for example a call to OverlayMsg::showTextWithCircle.
+	 * @details Just after @b setContentView, the views have no size nor position yet. The
+	 * action is run immediately if the main layout is laid out, otherwise at the first layout
+	 * pass, without delay nor polling. When several messages wait, only the last one is shown.
+	 */
+	public void showWhenLaidOut(int globalLayoutId, Runnable show)
+	{
+		manager.showWhenLaidOut((ViewGroup)activity.findViewById(globalLayoutId), show);
+	}
+
+	/**
+	 * @brief Show a message only if the user has not seen it yet.
+	 * @param messageId Id of the message in the OverlayMsg::SeenStore.
+	 * @param show Action showing the message, for example a call to OverlayMsg::showTextWithCircle.
+	 * @details The message is marked as seen when it is shown. Nothing is read from the disk
+	 * in the main thread: while the store is loading, the action waits for the end of the loading.
+	 */
+	public void showOnce(final String messageId, final Runnable show)
+	{
+		final SeenStore seenStore = SeenStore.get(activity);
+		seenStore.whenLoaded(new Runnable() {
+			public void run() {
+				if (seenStore.isSeen(messageId) || activity.isFinishing())
+					return;
+				seenStore.markSeen(messageId);
+				show.run();
+			}});
+	}
+
+	/**
+	 * @brief Create a walkthrough showing several messages one after the other.
+	 * @param globalLayoutId Id of the main layout.
+	 * @return Walkthrough without step.
+	 * @details The walkthrough uses the style of this object.
+	 */
+	public Walkthrough createWalkthrough(int globalLayoutId)
+	{
+		return new Walkthrough(globalLayoutId);
+	}
+
+	/**
+	 * @brief Add the geometry of the surrounded items to the overlay layout.
+	 * @param layout Overlay layout.
+	 * @param globalLayout Main layout.
+	 * @param viewToSurroundArray Array of items id.
+	 * @param shapeArray Array of corresponding shape.
+	 * @throws IllegalArgumentException If some items are not found.
+	 */
+	private void addHighlights(OverlayView layout, FrameLayout globalLayout, int[] viewToSurroundArray, int[] shapeArray)
+	{
+		long startTime = layout.metrics != null ? System.nanoTime() : 0;
+		int location[] = manager.tempLocation;
+		int offset = getStartOffset(globalLayout);
+		View[] views = resolveViews(globalLayout, viewToSurroundArray);
+		// Store all shapes
+		for (int i = 0; i < viewToSurroundArray.length; ++i)
+		{
+			View v = views[i];
+			v.getLocationInWindow(location);
+			OverlayGeometry.Highlight highlight = layout.obtainHighlight();
+			if (shapeArray[i] == SHAPE_CIRCLE)
+				highlight.setCircle(location[0], location[1], v.getWidth(), v.getHeight(), offset);
+			else
+				highlight.setRect(location[0], location[1], v.getWidth(), v.getHeight(), offset);
+			layout.addHighlight(highlight, v, null);
+		}
+		if (layout.metrics != null)
+			layout.metrics.resolveTime = System.nanoTime() - startTime;
+	}
+
+	/**
+	 * @brief Add the geometry of a big rectangle to the overlay layout.
+	 * @param layout Overlay layout.
+	 * @param globalLayout Main layout.
+	 * @param viewToSurroundArray Ids of the 2 corners.
+	 * @throws IllegalArgumentException If some items are not found.
+	 */
+	private void addBigRect(OverlayView layout, FrameLayout globalLayout, int[] viewToSurroundArray)
+	{
+		long startTime = layout.metrics != null ? System.nanoTime() : 0;
+		int location1[] = manager.tempLocation;
+		int location2[] = manager.tempEndLocation;
+		View[] views = resolveViews(globalLayout, viewToSurroundArray);
+		View v1 = views[0];
+		v1.getLocationInWindow(location1);
+		View v2 = views[1];
+		v2.getLocationInWindow(location2);
+		int offset = getStartOffset(globalLayout);
+
+		OverlayGeometry.Highlight highlight = layout.obtainHighlight();
+		highlight.setBigRect(location1[0], location1[1], location2[0], location2[1], v2.getWidth(), v2.getHeight(), offset);
+		layout.addHighlight(highlight, v1, v2);
+		if (layout.metrics != null)
+			layout.metrics.resolveTime = System.nanoTime() - startTime;
+	}
+
+	/**
+	 * @brief Find the surrounded views in the main layout.
+	 * @param globalLayout Main layout.
+	 * @param viewToSurroundArray Array of items id.
+	 * @return Views in the order of the ids, the array is reused by the next call.
+	 * @throws IllegalArgumentException If some items are not found.
+	 */
+	private View[] resolveViews(FrameLayout globalLayout, int[] viewToSurroundArray)
+	{
+		if (manager.resolvedViews.length < viewToSurroundArray.length)
+			manager.resolvedViews = new View[viewToSurroundArray.length];
+		manager.resolver.resolve(globalLayout, viewToSurroundArray, manager.resolvedViews);
+		return manager.resolvedViews;
+	}
+
+	/**
+	 * @brief Draw the background and add the message to the overlay layout.
+	 * @param layout Overlay layout.
+	 * @param globalLayout Main layout.
+	 * @param msg Message to show.
+	 * @param position Position of the text on the screen.
+	 * @details The layout is ready to be displayed but is not added to the main layout.
+	 */
+	private void prepareOverlayLayout(OverlayView layout, FrameLayout globalLayout, String msg, int position)
+	{
+		if (renderMode == RENDER_MODE_BITMAP)
+		{
+			long startTime = layout.metrics != null ? System.nanoTime() : 0;
+			Bitmap bitmap = createBitmap(globalLayout, layout.metrics);
+			applyStyleToRenderer();
+			manager.renderer.render(manager.bitmapCanvas, bitmap, globalLayout.getWidth(), globalLayout.getHeight(), getBitmapScale(), layout.highlights);
+			if (layout.metrics != null)
+				layout.metrics.rasterizeTime = System.nanoTime() - startTime;
+			setLayoutBitmap(layout, bitmap, quality == QUALITY_ALPHA_8 ? new ScrimRenderer(manager.renderer) : null);
+		}
+		bindMessageLayout(layout, msg, position);
+	}
+
+	/**
+	 * @brief Display an asynchronous message and call its listener at the first draw.
+	 * @param globalLayout Main layout.
+	 * @param layout Overlay layout.
+	 * @param overlayEvent Event called at the end of the display.
+	 * @param showListener Listener called when the message is drawn for the first time, can be null.
+	 */
+	private void showAsyncLayout(final FrameLayout globalLayout, OverlayView layout, OverlayMsg.Event overlayEvent, final OverlayMsg.ShowListener showListener)
+	{
+		showOverlayLayout(globalLayout, layout, overlayEvent);
+		if (showListener != null)
+		{
+			globalLayout.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+				public boolean onPreDraw() {
+					globalLayout.getViewTreeObserver().removeOnPreDrawListener(this);
+					showListener.onShown();
+					return true;
+				}});
+		}
+	}
+
+	/**
+	 * @brief Display the overlay layout.
+	 * @param globalLayout Main layout.
+	 * @param layout Overlay layout.
+	 * @param overlayEvent Event called at the end of the display.
+	 * @details The layout fades in, or replaces without animation the message displayed in the activity.
+	 */
+	private void showOverlayLayout(FrameLayout globalLayout, OverlayView layout, OverlayMsg.Event overlayEvent)
+	{
+		if (!manager.isReplacing())
+			setFadeIn(layout);
+		setFadeOut(layout, overlayEvent);
+		manager.show(globalLayout, layout);
+	}
+
+	/**
+	 * @brief Draw the background with all the surrounded items in the window, without a layer.
+	 * @param canvas Canvas of the overlay view.
+	 * @param highlights Surrounded items.
+	 */
+	private void drawOverlayDirect(Canvas canvas, ArrayList<OverlayGeometry.Highlight> highlights)
+	{
+		applyStyleToRenderer();
+		manager.renderer.drawDirect(canvas, highlights);
+	}
+
+	/**
+	 * @brief Apply the style fields to the renderer.
+	 */
+	private void applyStyleToRenderer()
+	{
+		manager.renderer.setStyle(backgroundColor, borderColor, borderSize, antiAlias);
+	}
+
+	/**
+	 * @brief Add a fade in animation to the overlay layout
+	 * @param layout Overlay layout.
+	 */
+	private void setFadeIn(OverlayView layout)
+	{
+		new Fade(layout, true, null).start();
+	}
+	
+	/**
+	 * @brief Add a fade out animation to the overlay layout.
+	 * @param layout Overlay layout.
+	 * @param overlayEvent Event called at the end of the display.
+	 * @details The event is attached in this method and called at the end of the animation.
+	 */
+	private void setFadeOut(final OverlayView layout, OverlayMsg.Event overlayEvent)
+	{
+		layout.overlayEvent = overlayEvent;
+		layout.setOnClickListener(new OnClickListener() {
+			public void onClick(View v) {
+				hideLayout(layout);
+			}});
+	}
+
+	/**
+	 * @brief Hide the overlay layout with a fade out.
+	 * @param layout Displayed overlay layout.
+	 * @details The event given to OverlayMsg::setFadeOut is called at the end of the animation.
+	 */
+	private void hideLayout(final OverlayView layout)
+	{
+		if (layout.closing)
+			return;
+		layout.closing = true;
+		if (layout.metrics != null)
+			layout.metrics.dismissTime = System.nanoTime();
+		// The layout is reset when removed
+		final OverlayMsg.Event overlayEvent = layout.overlayEvent;
+		// A running fade in is interrupted
+		new Fade(layout, false, new Runnable() {
+			public void run() {
+				if (layout.metrics != null)
+					layout.metrics.dismissLatency = System.nanoTime() - layout.metrics.dismissTime;
+				// Remove the layout from the parent
+				manager.remove(layout);
+				if (overlayEvent != null)
+					overlayEvent.event();
+			}}).start();
+	}
+
+	/**
+	 * @brief Get the time between two frames of the screen.
+	 * @return Frame interval in nanoseconds.
+	 */
+	private long getFrameInterval()
+	{
+		float refreshRate = activity.getWindowManager().getDefaultDisplay().getRefreshRate();
+		if (refreshRate < 1)
+			refreshRate = 60;
+		return (long)(1000000000L / refreshRate);
+	}
+	
+	/**
+	 * @brief Return the offset of the action bar. 
+	 * @param globalLayout Main layout.
+	 */
+	private int getStartOffset(FrameLayout globalLayout)
+	{
+		globalLayout.getLocationInWindow(manager.tempLocation);
+		return manager.tempLocation[1];
+	}
+	
+	/**
+	 * @brief Create the base bitmap.
+	 * @param globalLayout Main layout.
+	 * @param metrics Measures of the message, can be null.
+	 * @return Created bitmap
+	 */
+	private Bitmap createBitmap(FrameLayout globalLayout, ShowMetrics metrics)
+	{
+		return obtainBitmap(globalLayout.getWidth(), globalLayout.getHeight(), getBitmapConfig(), getBitmapScale(), metrics);
+	}
+	
+	/**
+	 * @brief Get a bitmap from the pool for a background.
+	 * @param width Width of the background.
+	 * @param height Height of the background.
+	 * @param config Configuration of the bitmap.
+	 * @param scale Reduction factor of the bitmap.
+	 * @param metrics Measures of the message, can be null.
+	 * @return Cleared bitmap.
+	 */
+	private static Bitmap obtainBitmap(int width, int height, Bitmap.Config config, int scale, ShowMetrics metrics)
+	{
+		return bitmapPool.obtain((width + scale - 1) / scale, (height + scale - 1) / scale, config, metrics);
+	}
+	
+	/**
+	 * @brief Get the bitmap configuration matching the quality.
+	 * @return Bitmap configuration.
+	 */
+	private Bitmap.Config getBitmapConfig()
+	{
+		if (quality == QUALITY_ALPHA_8)
+			return Bitmap.Config.ALPHA_8;
+		return Bitmap.Config.ARGB_8888;
+	}
+	
+	/**
+	 * @brief Get the reduction factor of the background bitmap.
+	 * @return Factor of at least 1.
+	 */
+	private int getBitmapScale()
+	{
+		return bitmapScale < 1 ? 1 : bitmapScale;
+	}
+	
+	/**
+	 * @brief Set the background bitmap of an overlay layout.
+	 * @param layout Overlay layout.
+	 * @param bitmap Background.
+	 * @param borderRenderer Renderer of the borders if the bitmap is a mask, null otherwise.
+	 */
+	private void setLayoutBitmap(OverlayView layout, Bitmap bitmap, ScrimRenderer borderRenderer)
+	{
+		layout.bitmap = bitmap;
+		setBackgroundToLayout(layout, new ScrimDrawable(bitmap, borderRenderer, layout.highlights));
+	}
+	
+	/**
+	 * @brief Give back the background bitmap of an overlay layout to the pool.
+	 * @param layout Overlay layout.
+	 * @details The layout must not be displayed anymore.
+	 */
+	private static void releaseBitmap(OverlayView layout)
+	{
+		if (layout.bitmap != null)
+		{
+			setBackgroundToLayout(layout, null);
+			bitmapPool.release(layout.bitmap);
+			layout.bitmap = null;
+		}
+	}
+	
+	/**
+	 * @brief Get an overlay layout from the manager.
+	 * @return Overlay layout without background.
+	 */
+	private OverlayView createOverlayLayout()
+	{
+		OverlayView layout = manager.obtainLayout(this);
+		if (metricsListener != null)
+		{
+			layout.metrics = new ShowMetrics();
+			layout.metrics.startTime = System.nanoTime();
+		}
+		return layout;
+	}
+
+	/**
+	 * @brief Set the disk cache of the backgrounds.
+	 * @param cache Cache used by OverlayMsg::showTextWithMultipleAsync, null to draw all the backgrounds.
+	 * @details A background found in the cache is copied in the bitmap instead of being drawn.
+	 */
+	public static void setScrimDiskCache(ScrimDiskCache cache)
+	{
+		scrimDiskCache = cache;
+	}
+
+	/**
+	 * @brief Set the listener reporting the cost of the messages.
+	 * @param listener Listener called when a displayed message is removed, null to stop measuring.
+	 * @details Nothing is measured while no listener is set. Must be called from the main thread.
+	 */
+	public static void setMetricsListener(MetricsListener listener)
+	{
+		metricsListener = listener;
+	}
+	
+	/**
+	 * @brief Apply the message to the message view.
+	 * @param textView Message view.
+	 * @param msg Message of the view.
+	 */
+	private void bindTextView(MessageView textView, String msg)
+	{
+		textView.setBackgroundColor(showTextBackground ? textBackgroundColor : 0x00000000);
+		textView.setMessage(msg, getTextPixelSize(textSize), textFont, textColor);
+	}
+	
+	/**
+	 * @brief Apply the style to the "Press to continue" view.
+	 * @param textView "Press to continue" view.
+	 */
+	private void bindPressToContinueTextView(MessageView textView)
+	{
+		textView.setVisibility(showPressToContinue ? View.VISIBLE : View.GONE);
+		textView.setMessage(getPressToContinueText(), getTextPixelSize(pressToContinueTextSize), null, textColor);
+	}
+
+	/**
+	 * @brief Get the "Press to continue" message.
+	 * @return Translated message.
+	 */
+	private String getPressToContinueText()
+	{
+		return activity.getResources().getString(R.string.overlay_msg_press_to_continue);
+	}
+
+	/**
+	 * @brief Convert a text size field to pixels.
+	 * @param size Value of OverlayMsg::textSize or OverlayMsg::pressToContinueTextSize.
+	 * @return Text size in pixel.
+	 * @details Text sizes are scaled pixels, as with TextView::setTextSize.
+	 */
+	private float getTextPixelSize(int size)
+	{
+		return TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, size, activity.getResources().getDisplayMetrics());
+	}
+
+	/**
+	 * @brief Measure messages in another thread before showing them.
+	 * @param globalLayoutId Id of the main layout.
+	 * @param msgs Messages that will be shown.
+	 * @details The messages are measured with the current style and the width of the main
+	 * layout, so showing them later does not measure the text in the main thread. Nothing
+	 * is done if the main layout is not laid out yet.
+	 */
+	public void prepareMessages(int globalLayoutId, String... msgs)
+	{
+		FrameLayout globalLayout = (FrameLayout)activity.findViewById(globalLayoutId);
+		prepareMessagesForWidth(globalLayout.getWidth(), msgs);
+	}
+
+	/**
+	 * @brief Measure messages in another thread.
+	 * @param width Width of the main layout.
+	 * @param msgs Messages that will be shown.
+	 */
+	private void prepareMessagesForWidth(final int width, final String[] msgs)
+	{
+		if (width <= 0)
+			return;
+		final float size = getTextPixelSize(textSize);
+		final Typeface typeface = textFont;
+		final String pressToContinueText = showPressToContinue ? getPressToContinueText() : null;
+		final float pressToContinueSize = getTextPixelSize(pressToContinueTextSize);
+		getRenderExecutor().execute(new Runnable() {
+			public void run() {
+				for (String msg : msgs)
+					if (msg != null)
+						textLayoutCache.obtain(msg, size, typeface, width);
+				if (pressToContinueText != null)
+					textLayoutCache.obtain(pressToContinueText, pressToContinueSize, null, width);
+			}});
+	}
+	
+	/**
+	 * @brief Apply the rules neccessary for the TextView position.
+	 * @param layoutParams LayoutParams of the message layout.
+	 * @param position Position of the text on the screen.
+	 * @details 
+	 * The @b position parameter is defined by : 
+	 * - OverlayMsg::POSITION_TOP,
+	 * - OverlayMsg::POSITION_CENTER,
+	 * - OverlayMsg::POSITION_BOTTOM.
+	 */
+	private void applyLayoutParams(RelativeLayout.LayoutParams layoutParams, int position)
+	{
+		// Remove the rules of the previous message
+		layoutParams.addRule(RelativeLayout.ALIGN_PARENT_TOP, 0);
+		layoutParams.addRule(RelativeLayout.CENTER_IN_PARENT, 0);
+		layoutParams.addRule(RelativeLayout.ALIGN_PARENT_BOTTOM, 0);
+		layoutParams.setMargins(0, 0, 0, 0);
+		switch (position)
+		{
+		case POSITION_TOP:
+			layoutParams.addRule(RelativeLayout.ALIGN_PARENT_TOP);
+			layoutParams.setMargins(0, textMargin, 0, 0);
+			break;
+		case POSITION_CENTER:
+			layoutParams.addRule(RelativeLayout.CENTER_IN_PARENT);
+			break;
+		case POSITION_BOTTOM:
+			layoutParams.addRule(RelativeLayout.ALIGN_PARENT_BOTTOM);
+			layoutParams.setMargins(0, 0, 0, textMargin);
+			break;
+		}
+	}
+	
+	/**
+	 * @brief Apply the message to the message layout of an overlay layout.
+	 * @param layout Overlay layout.
+	 * @param msg Message to show.
+	 * @param position Position in the screen.
+	 * @details The message views are created with the overlay layout and reused by the next messages.
+	 */
+	private void bindMessageLayout(OverlayView layout, String msg, int position)
+	{
+		bindMessageLayout(layout.messageLayout, msg, position);
+	}
+
+	/**
+	 * @brief Apply the message to a layout made by OverlayView::createMessageLayout.
+	 * @param messageLayout Message layout.
+	 * @param msg Message of the view.
+	 * @param position Position of the text on the screen.
+	 */
+	private void bindMessageLayout(LinearLayout messageLayout, String msg, int position)
+	{
+		RelativeLayout.LayoutParams layoutParams = (RelativeLayout.LayoutParams)messageLayout.getLayoutParams();
+		applyLayoutParams(layoutParams, position);
+		messageLayout.setLayoutParams(layoutParams);
+		messageLayout.setBackgroundColor(showTextBackground ? textBackgroundColor : 0x00000000);
+		bindTextView((MessageView)messageLayout.getChildAt(0), msg);
+		bindPressToContinueTextView((MessageView)messageLayout.getChildAt(1));
+	}
+	
+	/**
+	 * @brief Apply background to overlay layout.
+	 * @param layout Overlay layout.
+	 * @param drawable Background, null to remove it.
+	 */
+	@SuppressLint("NewApi")
+	@SuppressWarnings("deprecation")
+	private static void setBackgroundToLayout(RelativeLayout layout, Drawable drawable)
+	{
+		int sdkVersion = android.os.Build.VERSION.SDK_INT;
+		if (sdkVersion < android.os.Build.VERSION_CODES.JELLY_BEAN)
+		    layout.setBackgroundDrawable(drawable);
+		else
+		    layout.setBackground(drawable);
+	}
+	
+	/**
+	 * @brief Method to know if a message is currently showed.
+	 * @return True if message is currently showed.
+	 */
+	public boolean isCurrentlyShowed()
+	{
+		return manager.isCurrentlyShowed();
+	}
+	
+	/**
+	 * @brief Get the thread drawing the backgrounds of asynchronous messages.
+	 * @return Single thread executor, created at the first call.
+	 */
+	private static synchronized ExecutorService getRenderExecutor()
+	{
+		if (renderExecutor == null)
+			renderExecutor = createExecutor("OverlayMsg");
+		return renderExecutor;
+	}
+
+	/**
+	 * @brief Get the thread reading and writing the files.
+	 * @return Single thread executor, created at the first call.
+	 */
+	private static synchronized ExecutorService getIoExecutor()
+	{
+		if (ioExecutor == null)
+			ioExecutor = createExecutor("OverlayMsg-io");
+		return ioExecutor;
+	}
+
+	/**
+	 * @brief Create a single thread executor.
+	 * @param name Name of the thread.
+	 * @return Executor with a daemon thread.
+	 */
+	private static ExecutorService createExecutor(final String name)
+	{
+		return Executors.newSingleThreadExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, name);
+				thread.setDaemon(true);
+				return thread;
+			}});
+	}
+
+	/**
+	 * @brief Close a stream without error.
+	 * @param stream Stream to close, can be null.
+	 */
+	private static void closeQuietly(Closeable stream)
+	{
+		if (stream == null)
+			return;
+		try
+		{
+			stream.close();
+		}
+		catch (IOException e)
+		{
+			// Nothing to do
+		}
+	}
+
+	/**
+	 * @brief Get the handler of the main thread.
+	 * @return Handler created at the first call.
+	 */
+	private static synchronized Handler getMainHandler()
+	{
+		if (mainHandler == null)
+			mainHandler = new Handler(Looper.getMainLooper());
+		return mainHandler;
+	}
+
+	/**
+	 * @brief Get the pool of background bitmaps.
+	 * @return Pool shared by all the messages.
+	 */
+	public static BitmapPool getBitmapPool()
+	{
+		return bitmapPool;
+	}
+
+	/**
+	 * @brief Get the cache of the measured messages.
+	 * @return Cache shared by all the messages.
+	 */
+	public static TextLayoutCache getTextLayoutCache()
+	{
+		return textLayoutCache;
+	}
+
+	/**
+	 * @brief Set the memory kept between the messages.
+	 * @param bytes Byte budget, 7/8 for the bitmap pool and 1/8 for the text layouts.
+	 * @details The caches are trimmed immediately. Without a call, the budget depends on
+	 * the memory class of the device.
+	 */
+	public static synchronized void setMemoryBudget(long bytes)
+	{
+		memoryBudgetSet = true;
+		applyMemoryBudget(bytes);
+	}
+
+	/**
+	 * @brief Share a budget between the caches.
+	 * @param bytes Byte budget.
+	 */
+	private static void applyMemoryBudget(long bytes)
+	{
+		memoryBudget = bytes;
+		bitmapPool.setMaxBytes(bytes - bytes / 8);
+		textLayoutCache.setMaxBytes(bytes / 8);
+	}
+
+	/**
+	 * @brief Get the bytes held by the caches.
+	 * @return Accounting of each cache.
+	 */
+	public static synchronized MemoryUsage getMemoryUsage()
+	{
+		ScrimDiskCache diskCache = scrimDiskCache;
+		return new MemoryUsage(memoryBudget, bitmapPool.getCurrentBytes(), textLayoutCache.getCurrentBytes(),
+				Style.getTypefaceBytes(), diskCache != null ? diskCache.getCurrentBytes() : 0);
+	}
+
+	/**
+	 * @brief Release the memory of the caches.
+	 * @param level Level given to @b ComponentCallbacks2.onTrimMemory.
+	 * @details Called automatically from Android 4.0. The bitmap pool is halved while the
+	 * application runs with moderate memory, emptied when the memory is low, the text
+	 * layouts are also forgotten when the memory is critical or the UI hidden, and the
+	 * typefaces when the process is about to be killed. Can be called on older versions,
+	 * e.g. from @b onLowMemory with @b ComponentCallbacks2.TRIM_MEMORY_COMPLETE.
+	 */
+	public static void trimMemory(int level)
+	{
+		if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW)
+			bitmapPool.clear();
+		else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE)
+			bitmapPool.trimToSize(bitmapPool.getMaxBytes() / 2);
+		if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL)
+			textLayoutCache.clear();
+		if (level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE)
+			Style.clearTypefaces();
+	}
+
+	/**
+	 * @brief Register the memory callbacks once and set the default budget.
+	 * @param context Context of the application.
+	 * @details The default budget is the eighth of the memory class of the device, without
+	 * exceeding BitmapPool::DEFAULT_MAX_BYTES, then raised if needed so the share of the
+	 * bitmap pool keeps one ARGB_8888 background of the screen size: the budget exceeds
+	 * BitmapPool::DEFAULT_MAX_BYTES from 1440x2560. A low RAM device keeps the sixteenth of
+	 * its memory class, without this minimum: a background of the screen size is recycled
+	 * at the end of its message instead of staying in the pool.
+	 */
+	@SuppressLint("NewApi")
+	private static synchronized void registerMemoryCallbacks(Context context)
+	{
+		if (memoryCallbacksRegistered)
+			return;
+		memoryCallbacksRegistered = true;
+		Context applicationContext = context.getApplicationContext();
+		ActivityManager activityManager = (ActivityManager)applicationContext.getSystemService(Context.ACTIVITY_SERVICE);
+		if (!memoryBudgetSet && activityManager != null)
+		{
+			boolean lowRam = android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.KITKAT && activityManager.isLowRamDevice();
+			long bytes = activityManager.getMemoryClass() * 1024L * 1024L / 8;
+			if (lowRam)
+				bytes /= 2;
+			bytes = Math.min(bytes, BitmapPool.DEFAULT_MAX_BYTES);
+			if (!lowRam)
+			{
+				// ARGB_8888 background, 14.7 MB at 1440x2560
+				DisplayMetrics displayMetrics = applicationContext.getResources().getDisplayMetrics();
+				long screenBytes = (long)displayMetrics.widthPixels * displayMetrics.heightPixels * 4;
+				bytes = Math.max(bytes, screenBytes + (screenBytes + 6) / 7);
+			}
+			applyMemoryBudget(bytes);
+		}
+		if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+			applicationContext.registerComponentCallbacks(new MemoryCallbacks());
+	}
+	
+	/**
+	 * @brief Hide the current message.
+	 * @details The message displayed in the activity is hidden, even if it was shown by another object.
+	 */
+	public void hideCurrentMessage()
+	{
+		manager.hideCurrentMessage();
+	}
+
+	/**
+	 * @class Walkthrough
+	 * @brief Messages displayed one after the other.
+	 * @details While a step is displayed, the next one is prepared when the main
+	 * thread is idle. A press on the screen then only swaps the layouts. The last
+	 * step is hidden with a fade out.
+	 */
+	public class Walkthrough
+	{
+		/** @brief Id of the main layout. */
+		private final int globalLayoutId;
+		/** @brief Steps of the walkthrough. */
+		private final ArrayList<Step> steps = new ArrayList<Step>();
+		/** @brief Index of the displayed step, -1 if not started. */
+		private int currentStep = -1;
+		/** @brief Layout of the displayed step. */
+		private OverlayView stepLayout;
+		/** @brief Layout of the next step if already prepared. */
+		private OverlayView nextLayout;
+		/** @brief Main layout. */
+		private FrameLayout globalLayout;
+		/** @brief Event called at the end of the walkthrough. */
+		private OverlayMsg.Event endEvent;
+		/** @brief Time in nanoseconds spent to prepare each step. */
+		private long[] prepareTimes;
+		/** @brief Time in nanoseconds between the press and the display of each step. */
+		private long[] swapTimes;
+		/** @brief Duration of the move of the holes between the steps in milliseconds. */
+		private long morphDuration = MORPH_DURATION;
+		/** @brief Prepare the next step when the main thread is idle. */
+		private final MessageQueue.IdleHandler prepareNextStep = new MessageQueue.IdleHandler() {
+			public boolean queueIdle() {
+				if (nextLayout == null && currentStep >= 0 && currentStep + 1 < steps.size())
+					nextLayout = prepareStep(currentStep + 1);
+				return false;
+			}};
+		/** @brief Display the next step. */
+		private final OnClickListener nextStepListener = new OnClickListener() {
+			public void onClick(View v) {
+				showNextStep();
+			}};
+
+		/**
+		 * @brief Class constructor.
+		 * @param globalLayoutId Id of the main layout.
+		 */
+		private Walkthrough(int globalLayoutId)
+		{
+			this.globalLayoutId = globalLayoutId;
+		}
+
+		/**
+		 * @brief Set the duration of the move of the holes between the steps.
+		 * @param duration Duration in milliseconds, 0 to replace the steps without animation.
+		 * @details The holes of the displayed step move to the items of the next step
+		 * while the background stays displayed. Only the holes are drawn at each frame,
+		 * the background of the next step is prepared once as before.
+		 */
+		public void setMorphDuration(long duration)
+		{
+			morphDuration = duration;
+		}
+
+		/**
+		 * @brief Add a step at the end of the walkthrough.
+		 * @param step Step to add.
+		 */
+		public void addStep(Step step)
+		{
+			steps.add(step);
+		}
+
+		/**
+		 * @brief Display the first step.
+		 * @param overlayEvent Event called when the last step is closed.
+		 */
+		public void start(OverlayMsg.Event overlayEvent)
+		{
+			start(overlayEvent, 0);
+		}
+
+		/**
+		 * @brief Display the step saved by OverlayMsg::saveState.
+		 * @param savedState State given to @b onCreate or @b onRestoreInstanceState, can be null.
+		 * @param overlayEvent Event called when the last step is closed.
+		 * @return True if a step of a walkthrough was saved and will be displayed.
+		 * @details The steps must be added before the call. The step is displayed at the
+		 * first layout pass of the main layout.
+		 */
+		public boolean restoreState(Bundle savedState, final OverlayMsg.Event overlayEvent)
+		{
+			if (savedState == null || !savedState.containsKey(KEY_STATE_STEP))
+				return false;
+			final int step = savedState.getInt(KEY_STATE_STEP);
+			if (step < 0 || step >= steps.size())
+				return false;
+			applyStyleState(savedState.getIntArray(KEY_STATE_STYLE));
+			manager.showWhenLaidOut((ViewGroup)activity.findViewById(globalLayoutId), new Runnable() {
+				public void run() {
+					start(overlayEvent, step);
+				}});
+			return true;
+		}
+
+		/**
+		 * @brief Display a step.
+		 * @param overlayEvent Event called when the last step is closed.
+		 * @param firstStep Index of the step.
+		 */
+		private void start(OverlayMsg.Event overlayEvent, int firstStep)
+		{
+			if (steps.isEmpty())
+				return;
+			manager.cancelPendingShow();
+			endEvent = overlayEvent;
+			prepareTimes = new long[steps.size()];
+			swapTimes = new long[steps.size()];
+			globalLayout = (FrameLayout)activity.findViewById(globalLayoutId);
+			// Find the items of all the steps in one traversal
+			int[][] idArrays = new int[steps.size()][];
+			for (int i = 0; i < idArrays.length; ++i)
+				idArrays[i] = steps.get(i).viewToSurroundArray;
+			manager.resolver.prefetch(globalLayout, idArrays);
+			String[] msgs = new String[steps.size()];
+			for (int i = 0; i < msgs.length; ++i)
+				msgs[i] = steps.get(i).msg;
+			prepareMessagesForWidth(globalLayout.getWidth(), msgs);
+			currentStep = firstStep;
+			long startTime = System.nanoTime();
+			OverlayView layout = prepareStep(firstStep);
+			stepLayout = layout;
+			showOverlayLayout(globalLayout, layout, endEvent);
+			setStepListener(layout);
+			swapTimes[firstStep] = System.nanoTime() - startTime;
+			scheduleNextStep();
+		}
+
+		/**
+		 * @brief Hide the walkthrough with a fade out.
+		 * @details The event given to Walkthrough::start is called at the end of the animation.
+		 */
+		public void stop()
+		{
+			Looper.myQueue().removeIdleHandler(prepareNextStep);
+			if (nextLayout != null)
+			{
+				manager.remove(nextLayout);
+				nextLayout = null;
+			}
+			if (currentStep >= 0 && stepLayout != null && stepLayout == manager.currentLayout)
+			{
+				currentStep = steps.size() - 1;
+				setFadeOut(stepLayout, endEvent);
+				hideLayout(stepLayout);
+			}
+		}
+
+		/**
+		 * @brief Get the index of the displayed step.
+		 * @return Index of the step, -1 if not started.
+		 */
+		public int getCurrentStep()
+		{
+			return currentStep;
+		}
+
+		/**
+		 * @brief Get the time spent to prepare a step.
+		 * @param step Index of the step.
+		 * @return Time in nanoseconds, 0 if the step is not prepared.
+		 */
+		public long getPrepareTime(int step)
+		{
+			return prepareTimes == null ? 0 : prepareTimes[step];
+		}
+
+		/**
+		 * @brief Get the time between the press on the previous step and the display of a step.
+		 * @param step Index of the step.
+		 * @return Time in nanoseconds, 0 if the step is not displayed.
+		 * @details When the step was prepared in advance, this is only the cost of the swap.
+		 * For the first step, this is the time spent in Walkthrough::start.
+		 */
+		public long getSwapTime(int step)
+		{
+			return swapTimes == null ? 0 : swapTimes[step];
+		}
+
+		/**
+		 * @brief Replace the displayed step by the next one.
+		 */
+		private void showNextStep()
+		{
+			long startTime = System.nanoTime();
+			manager.cancelPendingShow();
+			Looper.myQueue().removeIdleHandler(prepareNextStep);
+			OverlayView layout = nextLayout;
+			nextLayout = null;
+			if (layout == null)
+				layout = prepareStep(currentStep + 1);
+			++currentStep;
+			// The displayed items are copied before the previous layout is recycled
+			OverlayView previousLayout = stepLayout;
+			if (morphDuration > 0 && previousLayout != null && previousLayout == manager.currentLayout && !previousLayout.closing)
+				layout.startMorph(previousLayout.getDisplayedHighlights(), morphDuration);
+			stepLayout = layout;
+			if (layout.metrics != null)
+				layout.metrics.startTime = startTime;
+			manager.show(globalLayout, layout);
+			setStepListener(layout);
+			swapTimes[currentStep] = System.nanoTime() - startTime;
+			scheduleNextStep();
+		}
+
+		/**
+		 * @brief Attach the action of a press to a step layout.
+		 * @param layout Layout of the displayed step.
+		 * @details The last step keeps the fade out. The other steps have no event, they are
+		 * replaced by the next step without ending the walkthrough.
+		 */
+		private void setStepListener(OverlayView layout)
+		{
+			if (currentStep + 1 < steps.size())
+			{
+				layout.overlayEvent = null;
+				layout.setOnClickListener(nextStepListener);
+			}
+			else
+				setFadeOut(layout, endEvent);
+		}
+
+		/**
+		 * @brief Prepare the next step when the main thread is idle.
+		 */
+		private void scheduleNextStep()
+		{
+			if (currentStep + 1 < steps.size())
+				Looper.myQueue().addIdleHandler(prepareNextStep);
+		}
+
+		/**
+		 * @brief Build the layout of a step.
+		 * @param index Index of the step.
+		 * @return Layout ready to be displayed.
+		 */
+		private OverlayView prepareStep(int index)
+		{
+			long startTime = System.nanoTime();
+			Step step = steps.get(index);
+			OverlayView layout = createOverlayLayout();
+			addHighlights(layout, globalLayout, step.viewToSurroundArray, step.shapeArray);
+			prepareOverlayLayout(layout, globalLayout, step.msg, step.position);
+			layout.setSpec(globalLayoutId, step.viewToSurroundArray, step.shapeArray, step.msg, step.position);
+			layout.step = index;
+			layout.walkthrough = this;
+			prepareTimes[index] = System.nanoTime() - startTime;
+			return layout;
+		}
+	}
+
+	/**
+	 * @class AsyncShow
+	 * @brief Background of an asynchronous message drawn in another thread.
+	 * @details The geometry and the style are copied on the main thread, only the
+	 * finished bitmap is given back to the main thread.
+	 */
+	private class AsyncShow implements Runnable
+	{
+		/** @brief Main layout. */
+		private final FrameLayout globalLayout;
+		/** @brief Overlay layout waiting for its background. */
+		private final OverlayView layout;
+		/** @brief Event called at the end of the display. */
+		private final OverlayMsg.Event overlayEvent;
+		/** @brief Listener called when the message is drawn for the first time. */
+		private final OverlayMsg.ShowListener showListener;
+		/** @brief Copy of the renderer style. */
+		private final ScrimRenderer snapshot;
+		/** @brief Width of the background. */
+		private final int width;
+		/** @brief Height of the background. */
+		private final int height;
+		/** @brief Configuration of the bitmap. */
+		private final Bitmap.Config config;
+		/** @brief Reduction factor of the bitmap. */
+		private final int scale;
+		/** @brief State at true if the message must not be displayed. */
+		private volatile boolean cancelled;
+		/** @brief Copy of the surrounded items, the layout may be recycled while drawing. */
+		private final ArrayList<OverlayGeometry.Highlight> highlights;
+		/** @brief Measures of the message, can be null. */
+		private final ShowMetrics metrics;
+		/** @brief Task in the render thread. */
+		Future<?> future;
+
+		/**
+		 * @brief Class constructor.
+		 * @param globalLayout Main layout.
+		 * @param layout Overlay layout with its geometry.
+		 * @param overlayEvent Event called at the end of the display.
+		 * @param showListener Listener called when the message is drawn for the first time.
+		 */
+		AsyncShow(FrameLayout globalLayout, OverlayView layout, OverlayMsg.Event overlayEvent, OverlayMsg.ShowListener showListener)
+		{
+			this.globalLayout = globalLayout;
+			this.layout = layout;
+			this.overlayEvent = overlayEvent;
+			this.showListener = showListener;
+			snapshot = new ScrimRenderer(manager.renderer);
+			width = globalLayout.getWidth();
+			height = globalLayout.getHeight();
+			config = getBitmapConfig();
+			scale = getBitmapScale();
+			// The items of the layout are reused by the next message, the render thread reads copies
+			highlights = new ArrayList<OverlayGeometry.Highlight>(layout.highlights.size());
+			for (int i = 0; i < layout.highlights.size(); ++i)
+			{
+				OverlayGeometry.Highlight highlight = new OverlayGeometry.Highlight();
+				highlight.set(layout.highlights.get(i));
+				highlights.add(highlight);
+			}
+			metrics = layout.metrics;
+		}
+
+		public void run()
+		{
+			if (cancelled)
+				return;
+			long startTime = metrics != null ? System.nanoTime() : 0;
+			final Bitmap bitmap = obtainBitmap(width, height, config, scale, metrics);
+			ScrimDiskCache diskCache = scrimDiskCache;
+			int[] key = diskCache != null ? ScrimDiskCache.buildKey(width, height, config, scale, snapshot, highlights) : null;
+			// A stored background is not drawn again
+			boolean drawn = key == null || !diskCache.read(key, bitmap);
+			if (drawn)
+				snapshot.render(new Canvas(), bitmap, width, height, scale, highlights);
+			if (metrics != null)
+				metrics.rasterizeTime = System.nanoTime() - startTime;
+			// The message does not wait for the disk, a copy is written since the main thread may release the bitmap
+			if (drawn && key != null)
+				diskCache.writeCopy(key, bitmap);
+			getMainHandler().post(new Runnable() {
+				public void run() {
+					if (cancelled)
+					{
+						bitmapPool.release(bitmap);
+						return;
+					}
+					manager.clearPendingShow(AsyncShow.this);
+					setLayoutBitmap(layout, bitmap, config == Bitmap.Config.ALPHA_8 ? snapshot : null);
+					showAsyncLayout(globalLayout, layout, overlayEvent, showListener);
+				}});
+		}
+
+		/**
+		 * @brief Cancel the message.
+		 * @details Must be called from the main thread.
+		 */
+		void cancel()
+		{
+			cancelled = true;
+			if (future != null)
+				future.cancel(false);
+			manager.remove(layout);
+		}
+	}
+
+	/**
+	 * @class Fade
+	 * @brief Fade in or fade out of an overlay layout.
+	 * @details From Android 3.1, the alpha of the view is animated over a hardware layer:
+	 * the background and the message are drawn once in the layer, each frame only blends
+	 * the layer. Older versions use an AlphaAnimation. Starting a fade interrupts the
+	 * running one, a fade out starts from the current alpha. From Android 4.1, the frames
+	 * are counted when a TransitionListener is set.
+	 */
+	private class Fade implements AnimationListener
+	{
+		/** @brief Faded layout. */
+		private final OverlayView layout;
+		/** @brief True for a fade in. */
+		private final boolean fadeIn;
+		/** @brief Action at the end of the fade, can be null. */
+		private final Runnable endAction;
+		/** @brief Generation of the layout when the fade started. */
+		private final int generation;
+		/** @brief Start time in nanoseconds. */
+		private long startTime;
+		/** @brief Frame counter, null if the frames are not counted. */
+		private FrameCounter frameCounter;
+		/** @brief State at true when the fade is ended or interrupted. */
+		private boolean finished;
+
+		/**
+		 * @brief Class constructor.
+		 * @param layout Faded layout.
+		 * @param fadeIn True for a fade in, false for a fade out.
+		 * @param endAction Action at the end of the fade, can be null.
+		 */
+		Fade(OverlayView layout, boolean fadeIn, Runnable endAction)
+		{
+			this.layout = layout;
+			this.fadeIn = fadeIn;
+			this.endAction = endAction;
+			generation = layout.generation;
+		}
+
+		/**
+		 * @brief Start the fade.
+		 */
+		void start()
+		{
+			if (layout.fade != null)
+				layout.fade.cancel();
+			layout.fade = this;
+			startTime = System.nanoTime();
+			int sdkVersion = android.os.Build.VERSION.SDK_INT;
+			if (transitionListener != null && sdkVersion >= android.os.Build.VERSION_CODES.JELLY_BEAN)
+			{
+				frameCounter = new FrameCounter(getFrameInterval());
+				frameCounter.start();
+			}
+			if (sdkVersion >= android.os.Build.VERSION_CODES.HONEYCOMB_MR1)
+				startPropertyAnimation();
+			else
+				startAlphaAnimation();
+		}
+
+		/**
+		 * @brief Animate the alpha of the layout over a hardware layer.
+		 */
+		@SuppressLint("NewApi")
+		private void startPropertyAnimation()
+		{
+			ViewPropertyAnimator animator = layout.animate();
+			animator.cancel();
+			long duration = FADE_DURATION;
+			if (fadeIn)
+				layout.setAlpha(0);
+			else
+				duration = (long)(FADE_DURATION * layout.getAlpha());
+			layout.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+			animator.alpha(fadeIn ? 1 : 0).setDuration(duration).setListener(new FadeAnimatorListener(this));
+		}
+
+		/**
+		 * @brief Animate the layout with an AlphaAnimation.
+		 */
+		private void startAlphaAnimation()
+		{
+			Animation animation = fadeIn ? new AlphaAnimation(0, 1) : new AlphaAnimation(1, 0);
+			animation.setDuration(FADE_DURATION);
+			animation.setAnimationListener(this);
+			if (fadeIn)
+				layout.setAnimation(animation);
+			else
+				layout.startAnimation(animation);
+		}
+
+		/**
+		 * @brief Interrupt the fade, the end action is not called.
+		 */
+		void cancel()
+		{
+			if (finished)
+				return;
+			finished = true;
+			if (frameCounter != null)
+				frameCounter.stop();
+			if (layout.fade == this)
+				layout.fade = null;
+		}
+
+		/**
+		 * @brief End the fade and call the end action.
+		 */
+		@SuppressLint("NewApi")
+		void finish()
+		{
+			if (finished)
+				return;
+			finished = true;
+			if (layout.fade == this)
+				layout.fade = null;
+			if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.HONEYCOMB_MR1)
+				layout.setLayerType(View.LAYER_TYPE_NONE, null);
+			if (layout.metrics != null)
+			{
+				if (fadeIn)
+					layout.metrics.fadeInTime = System.nanoTime() - startTime;
+				else
+					layout.metrics.fadeOutTime = System.nanoTime() - startTime;
+			}
+			if (transitionListener != null)
+			{
+				long duration = System.nanoTime() - startTime;
+				if (frameCounter != null)
+				{
+					frameCounter.stop();
+					transitionListener.onTransitionEnd(fadeIn, duration, frameCounter.frameCount, frameCounter.droppedFrames);
+				}
+				else
+					transitionListener.onTransitionEnd(fadeIn, duration, -1, -1);
+			}
+			// The layout may be recycled before the end of the animation
+			if (endAction != null && layout.generation == generation)
+				endAction.run();
+		}
+
+		public void onAnimationStart(Animation animation) {}
+		public void onAnimationRepeat(Animation animation) {}
+		public void onAnimationEnd(Animation animation) {
+			finish();
+		}
+	}
+
+	/**
+	 * @class FadeAnimatorListener
+	 * @brief Listener of the property animation of a fade.
+	 * @details Only used from Android 3.1.
+	 */
+	@SuppressLint("NewApi")
+	private static class FadeAnimatorListener extends AnimatorListenerAdapter
+	{
+		/** @brief Fade of the animation. */
+		private final Fade fade;
+
+		/**
+		 * @brief Class constructor.
+		 * @param fade Fade of the animation.
+		 */
+		FadeAnimatorListener(Fade fade)
+		{
+			this.fade = fade;
+		}
+
+		@Override
+		public void onAnimationCancel(Animator animation)
+		{
+			fade.cancel();
+		}
+
+		@Override
+		public void onAnimationEnd(Animator animation)
+		{
+			fade.finish();
+		}
+	}
+
+	/**
+	 * @class FrameCounter
+	 * @brief Count the frames and the dropped frames with the Choreographer.
+	 * @details Only used from Android 4.1. A frame is dropped when the time since the
+	 * previous frame is longer than one and a half frame interval.
+	 */
+	@SuppressLint("NewApi")
+	private static class FrameCounter implements Choreographer.FrameCallback
+	{
+		/** @brief Time between two frames in nanoseconds. */
+		private final long frameInterval;
+		/** @brief Time of the previous frame in nanoseconds, 0 before the first frame. */
+		private long lastFrameTime;
+		/** @brief State at true while counting. */
+		private boolean running;
+		/** @brief Number of frames drawn. */
+		int frameCount;
+		/** @brief Number of frames missed. */
+		int droppedFrames;
+
+		/**
+		 * @brief Class constructor.
+		 * @param frameInterval Time between two frames in nanoseconds.
+		 */
+		FrameCounter(long frameInterval)
+		{
+			this.frameInterval = frameInterval;
+		}
+
+		/**
+		 * @brief Start counting at the next frame.
+		 */
+		void start()
+		{
+			running = true;
+			Choreographer.getInstance().postFrameCallback(this);
+		}
+
+		/**
+		 * @brief Stop counting.
+		 */
+		void stop()
+		{
+			running = false;
+			Choreographer.getInstance().removeFrameCallback(this);
+		}
+
+		public void doFrame(long frameTimeNanos)
+		{
+			if (!running)
+				return;
+			if (lastFrameTime != 0)
+			{
+				long interval = frameTimeNanos - lastFrameTime;
+				if (interval > frameInterval * 3 / 2)
+					droppedFrames += (int)((interval + frameInterval / 2) / frameInterval) - 1;
+			}
+			++frameCount;
+			lastFrameTime = frameTimeNanos;
+			Choreographer.getInstance().postFrameCallback(this);
+		}
+	}
+
+	/**
+	 * @class Manager
+	 * @brief Messages of an activity.
+	 * @details All the OverlayMsg objects of an activity share the same manager. It knows
+	 * the displayed message, replaces it instead of stacking a new layout over it and keeps
+	 * the overlay layouts to reuse them for the next messages. The layers share a second
+	 * overlay layout with a single background. The manager is only kept
+	 * while an OverlayMsg object or a displayed message uses it.
+	 */
+	public static class Manager
+	{
+		/** @brief Maximum number of overlay layouts kept for reuse. */
+		private final static int MAX_FREE_LAYOUTS = 2;
+		/** @brief Managers of the activities. */
+		private final static WeakHashMap<Activity, WeakReference<Manager>> managers = new WeakHashMap<Activity, WeakReference<Manager>>();
+		/** @brief Application activity. */
+		private final Activity activity;
+		/** @brief Overlay layouts ready to be reused. */
+		private final ArrayList<OverlayView> freeLayouts = new ArrayList<OverlayView>(MAX_FREE_LAYOUTS);
+		/** @brief Current message layout. */
+		private OverlayView currentLayout;
+		/** @brief Overlay layout of the layers, null if no layer is displayed. */
+		OverlayView stackLayout;
+		/** @brief Displayed layers, the lowest z-order first. */
+		final ArrayList<Layer> layers = new ArrayList<Layer>();
+		/** @brief Asynchronous message waiting for its background. */
+		private AsyncShow pendingShow;
+		/** @brief Canvas reused to draw the background bitmaps. */
+		final Canvas bitmapCanvas = new Canvas();
+		/** @brief Location reused to read the position of the views. */
+		final int[] tempLocation = new int[2];
+		/** @brief Location of the second corner of a big rectangle. */
+		final int[] tempEndLocation = new int[2];
+		/** @brief Resolver of the surrounded views. */
+		final ViewResolver resolver = new ViewResolver();
+		/** @brief Views reused to receive the surrounded views. */
+		View[] resolvedViews = new View[2];
+		/** @brief Renderer of the background, the style of the OverlayMsg object is applied before each use. */
+		final ScrimRenderer renderer = new ScrimRenderer();
+		/** @brief Show waiting for the layout, null if none. */
+		private Runnable layoutShow;
+		/** @brief Main layout observed for the waiting show. */
+		private ViewGroup layoutObserved;
+		/** @brief Run the waiting show at the first valid layout pass. */
+		private final ViewTreeObserver.OnGlobalLayoutListener layoutListener = new ViewTreeObserver.OnGlobalLayoutListener() {
+			public void onGlobalLayout() {
+				if (layoutObserved != null && isLaidOut(layoutObserved))
+				{
+					Runnable show = layoutShow;
+					stopWaitingLayout();
+					show.run();
+				}
+			}};
+
+		/**
+		 * @brief Class constructor.
+		 * @param activity Application activity.
+		 */
+		private Manager(Activity activity)
+		{
+			this.activity = activity;
+		}
+
+		/**
+		 * @brief Get the manager of an activity.
+		 * @param activity Application activity.
+		 * @return Manager of the activity, created if needed.
+		 */
+		public static Manager get(Activity activity)
+		{
+			synchronized (managers)
+			{
+				WeakReference<Manager> reference = managers.get(activity);
+				Manager manager = reference == null ? null : reference.get();
+				if (manager == null)
+				{
+					manager = new Manager(activity);
+					managers.put(activity, new WeakReference<Manager>(manager));
+				}
+				return manager;
+			}
+		}
+
+		/**
+		 * @brief Method to know if a message is currently showed in the activity.
+		 * @return True if message is currently showed.
+		 */
+		public boolean isCurrentlyShowed()
+		{
+			return currentLayout != null;
+		}
+
+		/**
+		 * @brief Hide the current message of the activity.
+		 * @details An asynchronous message that is not displayed yet or a message waiting for the layout is cancelled.
+		 * A step of a walkthrough stops the walkthrough.
+		 */
+		public void hideCurrentMessage()
+		{
+			stopWaitingLayout();
+			cancelPendingShow();
+			if (currentLayout == null || currentLayout.closing)
+				return;
+			if (currentLayout.walkthrough != null)
+				currentLayout.walkthrough.stop();
+			else
+				currentLayout.owner.hideLayout(currentLayout);
+		}
+
+		/**
+		 * @brief Know if a new message will replace the displayed one.
+		 * @return True if a message is displayed and is not closing.
+		 */
+		boolean isReplacing()
+		{
+			return currentLayout != null && !currentLayout.closing;
+		}
+
+		/**
+		 * @brief Get an overlay layout for a message.
+		 * @param owner Object showing the message.
+		 * @return Reused overlay layout if available, new one otherwise.
+		 */
+		OverlayView obtainLayout(OverlayMsg owner)
+		{
+			OverlayView layout;
+			if (freeLayouts.isEmpty())
+				layout = new OverlayView(activity);
+			else
+				layout = freeLayouts.remove(freeLayouts.size() - 1);
+			layout.bind(owner);
+			return layout;
+		}
+
+		/**
+		 * @brief Display a message layout.
+		 * @param globalLayout Main layout.
+		 * @param layout Overlay layout.
+		 * @details A displayed message is replaced in place and its event is called, a closing
+		 * message ends its fade out.
+		 */
+		void show(FrameLayout globalLayout, OverlayView layout)
+		{
+			OverlayView previousLayout = currentLayout;
+			currentLayout = layout;
+			if (layout.getParent() == null)
+				globalLayout.addView(layout);
+			if (previousLayout != null && previousLayout != layout && !previousLayout.closing)
+			{
+				// The layout is reset when removed
+				OverlayMsg.Event previousEvent = previousLayout.overlayEvent;
+				remove(previousLayout);
+				if (previousEvent != null)
+					previousEvent.event();
+			}
+		}
+
+		/**
+		 * @brief Remove a message layout and keep it for reuse.
+		 * @param layout Overlay layout, displayed or not.
+		 */
+		void remove(OverlayView layout)
+		{
+			if (layout.owner == null)
+				return;
+			if (layout == currentLayout)
+				currentLayout = null;
+			if (layout == stackLayout)
+			{
+				for (int i = 0; i < layers.size(); ++i)
+				{
+					layout.removeView(layers.get(i).messageLayout);
+					layers.get(i).showing = false;
+				}
+				layers.clear();
+				stackLayout = null;
+			}
+			layout.clearFade();
+			if (layout.metrics != null && layout.metrics.firstFrameTime != 0 && metricsListener != null)
+				metricsListener.onShowMetrics(layout.metrics);
+			ViewGroup parent = (ViewGroup)layout.getParent();
+			if (parent != null)
+				parent.removeView(layout);
+			releaseBitmap(layout);
+			layout.reset();
+			if (freeLayouts.size() < MAX_FREE_LAYOUTS)
+				freeLayouts.add(layout);
+		}
+
+		/**
+		 * @brief Add a layer in the z-order.
+		 * @param layer Layer to add.
+		 * @return Index of the layer, a layer is above the previous layers of the same order.
+		 */
+		int insertLayer(Layer layer)
+		{
+			int index = layers.size();
+			while (index > 0 && layers.get(index - 1).zOrder > layer.zOrder)
+				--index;
+			layers.add(index, layer);
+			layer.showing = true;
+			return index;
+		}
+
+		/**
+		 * @brief Set the asynchronous message waiting for its background.
+		 * @param asyncShow Asynchronous message.
+		 */
+		void setPendingShow(AsyncShow asyncShow)
+		{
+			cancelPendingShow();
+			pendingShow = asyncShow;
+		}
+
+		/**
+		 * @brief Forget an asynchronous message that is ready to be displayed.
+		 * @param asyncShow Asynchronous message.
+		 */
+		void clearPendingShow(AsyncShow asyncShow)
+		{
+			if (pendingShow == asyncShow)
+				pendingShow = null;
+		}
+
+		/**
+		 * @brief Cancel the asynchronous message waiting for its background.
+		 */
+		void cancelPendingShow()
+		{
+			if (pendingShow != null)
+			{
+				AsyncShow asyncShow = pendingShow;
+				pendingShow = null;
+				asyncShow.cancel();
+			}
+		}
+
+		/**
+		 * @brief Run a show when the main layout is laid out.
+		 * @param globalLayout Main layout.
+		 * @param show Action showing the message.
+		 * @details The show waits for the first layout pass giving a size to the main layout
+		 * and its children. A new request replaces the waiting one, only the last message
+		 * is drawn.
+		 */
+		void showWhenLaidOut(ViewGroup globalLayout, Runnable show)
+		{
+			if (isLaidOut(globalLayout))
+			{
+				stopWaitingLayout();
+				show.run();
+				return;
+			}
+			if (layoutObserved != globalLayout)
+			{
+				stopWaitingLayout();
+				layoutObserved = globalLayout;
+				globalLayout.getViewTreeObserver().addOnGlobalLayoutListener(layoutListener);
+			}
+			layoutShow = show;
+		}
+
+		/**
+		 * @brief Forget the show waiting for the layout.
+		 */
+		@SuppressLint("NewApi")
+		@SuppressWarnings("deprecation")
+		void stopWaitingLayout()
+		{
+			if (layoutObserved != null)
+			{
+				ViewTreeObserver observer = layoutObserved.getViewTreeObserver();
+				if (android.os.Build.VERSION.SDK_INT < android.os.Build.VERSION_CODES.JELLY_BEAN)
+					observer.removeGlobalOnLayoutListener(layoutListener);
+				else
+					observer.removeOnGlobalLayoutListener(layoutListener);
+				layoutObserved = null;
+			}
+			layoutShow = null;
+		}
+
+		/**
+		 * @brief Know if a layout has a valid size.
+		 * @param view Main layout.
+		 * @return True if the layout is measured and no layout pass is waiting in its hierarchy.
+		 */
+		private static boolean isLaidOut(View view)
+		{
+			return view.getWidth() > 0 && view.getHeight() > 0 && !view.isLayoutRequested();
+		}
+	}
+
+	/**
+	 * @class MessageView
+	 * @brief Text of a message drawn from a cached layout.
+	 * @details Replaces a TextView: the text is measured once by the TextLayoutCache for
+	 * each width and only drawn at each frame.
+	 */
+	private static class MessageView extends View
+	{
+		/** @brief Displayed text. */
+		private String text;
+		/** @brief Text size in pixel. */
+		private float textSize;
+		/** @brief Typeface of the text, null for the default one. */
+		private Typeface typeface;
+		/** @brief Color of the text. */
+		private int textColor;
+		/** @brief Layout of the text for the measured width. */
+		private StaticLayout layout;
+
+		/**
+		 * @brief Class constructor.
+		 * @param context Application activity.
+		 */
+		MessageView(Context context)
+		{
+			super(context);
+		}
+
+		/**
+		 * @brief Change the message.
+		 * @param text Displayed text, null for no text.
+		 * @param textSize Text size in pixel.
+		 * @param typeface Typeface of the text, null for the default one.
+		 * @param textColor Color of the text.
+		 */
+		void setMessage(String text, float textSize, Typeface typeface, int textColor)
+		{
+			boolean sameText = text == null ? this.text == null : text.equals(this.text);
+			if (!sameText || textSize != this.textSize || typeface != this.typeface)
+			{
+				this.text = text;
+				this.textSize = textSize;
+				this.typeface = typeface;
+				layout = null;
+				setContentDescription(text);
+				requestLayout();
+			}
+			this.textColor = textColor;
+			invalidate();
+		}
+
+		@Override
+		protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec)
+		{
+			int width;
+			if (MeasureSpec.getMode(widthMeasureSpec) == MeasureSpec.UNSPECIFIED)
+				width = getResources().getDisplayMetrics().widthPixels;
+			else
+				width = MeasureSpec.getSize(widthMeasureSpec);
+			int textWidth = Math.max(width - getPaddingLeft() - getPaddingRight(), 0);
+			if (text == null)
+				layout = null;
+			else if (layout == null || layout.getWidth() != textWidth)
+				layout = textLayoutCache.obtain(text, textSize, typeface, textWidth);
+			int height = getPaddingTop() + getPaddingBottom() + (layout == null ? 0 : layout.getHeight());
+			setMeasuredDimension(width, resolveSize(height, heightMeasureSpec));
+		}
+
+		@Override
+		protected void onDraw(Canvas canvas)
+		{
+			if (layout == null)
+				return;
+			// The paint is shared by the views drawing the same cached layout
+			layout.getPaint().setColor(textColor);
+			int saveCount = canvas.save();
+			canvas.translate(getPaddingLeft(), getPaddingTop());
+			layout.draw(canvas);
+			canvas.restoreToCount(saveCount);
+		}
+	}
+
+	/**
+	 * @class OverlayView
+	 * @brief Layout of a message over the main layout.
+	 * @details With OverlayMsg::RENDER_MODE_DIRECT, the background is drawn at each frame
+	 * from the stored geometry instead of a bitmap. The layout and its message views are
+	 * reused by the manager for the next messages.
+	 */
+	private static class OverlayView extends RelativeLayout implements ViewTreeObserver.OnPreDrawListener
+	{
+		/** @brief Object showing the message, null when the layout is not used. */
+		OverlayMsg owner;
+		/** @brief Surrounded items. */
+		final ArrayList<OverlayGeometry.Highlight> highlights = new ArrayList<OverlayGeometry.Highlight>();
+		/** @brief Surrounded views, in the order of the items. */
+		final ArrayList<View> targets = new ArrayList<View>();
+		/** @brief Second view of a big rectangle, null for other items. */
+		final ArrayList<View> endTargets = new ArrayList<View>();
+		/** @brief Background bitmap, null with OverlayMsg::RENDER_MODE_DIRECT. */
+		Bitmap bitmap;
+		/** @brief Layout of the message. */
+		final LinearLayout messageLayout;
+		/** @brief Message view. */
+		final MessageView textView;
+		/** @brief "Press to continue" view. */
+		final MessageView pressToContinueTextView;
+		/** @brief State at true while the fade out is running. */
+		boolean closing;
+		/** @brief Incremented each time the layout is reused. */
+		int generation;
+		/** @brief Running fade, null if none. */
+		Fade fade;
+		/** @brief Measures of the message, null if not measured. */
+		ShowMetrics metrics;
+		/** @brief Id of a single item, reused by the next messages. */
+		final int[] singleId = new int[1];
+		/** @brief Shape of a single item, reused by the next messages. */
+		final int[] singleShape = new int[1];
+		/** @brief Ids of the corners of a big rectangle, reused by the next messages. */
+		final int[] pairIds = new int[2];
+		/** @brief Id of the main layout of the message. */
+		int specGlobalLayoutId;
+		/** @brief Items id of the message, null if not saved. */
+		int[] specIds;
+		/** @brief Shapes of the items, null for a big rectangle. */
+		int[] specShapes;
+		/** @brief Message to show. */
+		String specMsg;
+		/** @brief Position of the message. */
+		int specPosition;
+		/** @brief Index of the walkthrough step, -1 for other messages. */
+		int step = -1;
+		/** @brief Walkthrough of the step, null for other messages. */
+		Walkthrough walkthrough;
+		/** @brief Event called at the end of the fade out, can be null. */
+		OverlayMsg.Event overlayEvent;
+		/** @brief Draw the background at each frame. */
+		private boolean direct;
+		/** @brief Follow the surrounded items when they move. */
+		private boolean tracking;
+		/** @brief Main layout observed while tracking. */
+		private ViewGroup trackedLayout;
+		/** @brief Geometry read while tracking. */
+		private final OverlayGeometry.Highlight trackedHighlight = new OverlayGeometry.Highlight();
+		/** @brief Part of the background to draw again. */
+		private final Rect dirtyRect = new Rect();
+		/** @brief Bounds of an item with its border. */
+		private final int[] outerBounds = new int[4];
+		/** @brief Second location read while tracking. */
+		private final int[] endLocation = new int[2];
+		/** @brief Give the touches in the holes to the views under the overlay. */
+		private boolean touchThrough;
+		/** @brief Holes under the touches, built at the first press. */
+		private final OverlayGeometry.HoleGrid holeGrid = new OverlayGeometry.HoleGrid();
+		/** @brief The holes changed since the grid was built. */
+		private boolean holeGridDirty = true;
+		/** @brief Start time of the morph in nanoseconds, 0 if no morph is running. */
+		private long morphStartTime;
+		/** @brief Duration of the morph in nanoseconds. */
+		private long morphDuration;
+		/** @brief Items at the start of the morph, reused by the next morphs. */
+		private final ArrayList<OverlayGeometry.Highlight> morphFrom = new ArrayList<OverlayGeometry.Highlight>();
+		/** @brief Items drawn during the morph. */
+		private final ArrayList<OverlayGeometry.Highlight> morphItems = new ArrayList<OverlayGeometry.Highlight>();
+		/** @brief Items of the previous messages, reused by the next ones. */
+		private final ArrayList<OverlayGeometry.Highlight> freeHighlights = new ArrayList<OverlayGeometry.Highlight>();
+		/** @brief Items allocated for the morphs, never released. */
+		private final ArrayList<OverlayGeometry.Highlight> morphPool = new ArrayList<OverlayGeometry.Highlight>();
+		/** @brief Background hidden during the morph. */
+		private Drawable morphBackground;
+		/** @brief The morph is drawn in the background bitmap. */
+		private boolean morphInBitmap;
+		/** @brief The background bitmap holds the items of the morph. */
+		private boolean morphDrawn;
+		/** @brief Part of the background bitmap moved by the tracked views during the morph. */
+		private final Rect morphRect = new Rect();
+		/** @brief Parts of the background bitmap to draw again at the next frame of the morph, one per item, never released. */
+		private final ArrayList<Rect> morphRects = new ArrayList<Rect>();
+		/** @brief Number of parts used at the start of @b morphRects. */
+		private int morphRectCount;
+
+		/**
+		 * @brief Class constructor.
+		 * @param context Application activity.
+		 * @details Creates the message views.
+		 */
+		OverlayView(Context context)
+		{
+			super(context);
+			setLayoutParams(new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT));
+			messageLayout = createMessageLayout(context);
+			textView = (MessageView)messageLayout.getChildAt(0);
+			pressToContinueTextView = (MessageView)messageLayout.getChildAt(1);
+			addView(messageLayout);
+		}
+
+		/**
+		 * @brief Create the views of a message.
+		 * @param context Application activity.
+		 * @return Layout with the message view and the "Press to continue" view.
+		 */
+		static LinearLayout createMessageLayout(Context context)
+		{
+			LinearLayout messageLayout = new LinearLayout(context);
+			messageLayout.setLayoutParams(new RelativeLayout.LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.WRAP_CONTENT));
+			messageLayout.setOrientation(LinearLayout.VERTICAL);
+			messageLayout.setGravity(Gravity.CENTER_HORIZONTAL);
+			messageLayout.addView(new MessageView(context));
+			messageLayout.addView(new MessageView(context));
+			return messageLayout;
+		}
+
+		/**
+		 * @brief Use the layout for a message.
+		 * @param owner Object showing the message.
+		 */
+		void bind(OverlayMsg owner)
+		{
+			this.owner = owner;
+			direct = owner.renderMode == RENDER_MODE_DIRECT;
+			tracking = owner.trackTargets;
+			touchThrough = owner.touchThroughHoles;
+			setWillNotDraw(!direct);
+		}
+
+		/**
+		 * @brief Forget the message so the layout can be reused.
+		 */
+		void reset()
+		{
+			owner = null;
+			metrics = null;
+			specIds = null;
+			specShapes = null;
+			specMsg = null;
+			step = -1;
+			walkthrough = null;
+			overlayEvent = null;
+			closing = false;
+			++generation;
+			for (int i = 0; i < highlights.size(); ++i)
+				freeHighlights.add(highlights.get(i));
+			highlights.clear();
+			targets.clear();
+			endTargets.clear();
+			holeGridDirty = true;
+			morphStartTime = 0;
+			morphBackground = null;
+			morphInBitmap = false;
+			morphRect.setEmpty();
+			messageLayout.setVisibility(View.VISIBLE);
+			setOnClickListener(null);
+		}
+
+		/**
+		 * @brief Keep the parameters of the message to save them.
+		 * @param globalLayoutId Id of the main layout.
+		 * @param ids Items id.
+		 * @param shapes Shapes of the items, null for a big rectangle.
+		 * @param msg Message to show.
+		 * @param position Position of the message.
+		 */
+		void setSpec(int globalLayoutId, int[] ids, int[] shapes, String msg, int position)
+		{
+			specGlobalLayoutId = globalLayoutId;
+			specIds = ids;
+			specShapes = shapes;
+			specMsg = msg;
+			specPosition = position;
+		}
+
+		/**
+		 * @brief Stop the running fade and make the layout opaque again.
+		 */
+		@SuppressLint("NewApi")
+		void clearFade()
+		{
+			if (fade != null)
+				fade.cancel();
+			clearAnimation();
+			if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.HONEYCOMB_MR1)
+			{
+				animate().cancel();
+				setAlpha(1);
+				setLayerType(View.LAYER_TYPE_NONE, null);
+			}
+		}
+
+		/**
+		 * @brief Get an item to fill.
+		 * @return Item of a previous message if available, new one otherwise.
+		 * @details The item is given back to the layout by OverlayMsg::OverlayView::reset.
+		 */
+		OverlayGeometry.Highlight obtainHighlight()
+		{
+			int last = freeHighlights.size() - 1;
+			return last >= 0 ? freeHighlights.remove(last) : new OverlayGeometry.Highlight();
+		}
+
+		/**
+		 * @brief Add a surrounded item.
+		 * @param highlight Geometry of the item.
+		 * @param target Surrounded view.
+		 * @param endTarget Second view of a big rectangle, null for other items.
+		 */
+		void addHighlight(OverlayGeometry.Highlight highlight, View target, View endTarget)
+		{
+			highlights.add(highlight);
+			targets.add(target);
+			endTargets.add(endTarget);
+			holeGridDirty = true;
+		}
+
+		@Override
+		public boolean dispatchTouchEvent(MotionEvent event)
+		{
+			// The other events of a gesture go to the view that received the press
+			if (touchThrough && event.getActionMasked() == MotionEvent.ACTION_DOWN)
+			{
+				if (holeGridDirty)
+				{
+					holeGrid.build(highlights, getWidth(), getHeight());
+					holeGridDirty = false;
+				}
+				if (holeGrid.find(highlights, (int)event.getX(), (int)event.getY()) >= 0)
+					return false;
+			}
+			return super.dispatchTouchEvent(event);
+		}
+
+		@Override
+		protected void onAttachedToWindow()
+		{
+			super.onAttachedToWindow();
+			if (tracking)
+			{
+				trackedLayout = (ViewGroup)getParent();
+				trackedLayout.getViewTreeObserver().addOnPreDrawListener(this);
+			}
+		}
+
+		@Override
+		protected void onDetachedFromWindow()
+		{
+			if (trackedLayout != null)
+			{
+				trackedLayout.getViewTreeObserver().removeOnPreDrawListener(this);
+				trackedLayout = null;
+			}
+			super.onDetachedFromWindow();
+		}
+
+		/**
+		 * @brief Check the position of the surrounded views before each frame.
+		 * @return Always true, the frame is never cancelled.
+		 * @details Only the items that moved are updated and only their old and new
+		 * bounds are drawn again.
+		 */
+		public boolean onPreDraw()
+		{
+			if (owner == null)
+				return true;
+			dirtyRect.setEmpty();
+			updateHighlights();
+			if (!dirtyRect.isEmpty() && morphStartTime != 0 && morphInBitmap)
+			{
+				// The bitmap holds the items of the morph, drawn again at the next frame
+				morphRect.union(dirtyRect);
+				invalidate();
+			}
+			else if (!dirtyRect.isEmpty())
+			{
+				if (bitmap != null)
+				{
+					owner.applyStyleToRenderer();
+					owner.manager.renderer.renderRegion(owner.manager.bitmapCanvas, bitmap, getWidth(), getHeight(), owner.getBitmapScale(), highlights, dirtyRect);
+				}
+				invalidate(dirtyRect);
+			}
+			return true;
+		}
+
+		/**
+		 * @brief Read again the geometry of the surrounded views.
+		 * @details The bounds of the items that moved are added to the part to draw again.
+		 */
+		void updateHighlights()
+		{
+			int[] location = owner.manager.tempLocation;
+			((View)getParent()).getLocationInWindow(location);
+			int offset = location[1];
+			for (int i = 0; i < highlights.size(); ++i)
+			{
+				OverlayGeometry.Highlight highlight = highlights.get(i);
+				View target = targets.get(i);
+				View endTarget = endTargets.get(i);
+				target.getLocationInWindow(location);
+				if (endTarget != null)
+				{
+					endTarget.getLocationInWindow(endLocation);
+					trackedHighlight.setBigRect(location[0], location[1], endLocation[0], endLocation[1], endTarget.getWidth(), endTarget.getHeight(), offset);
+				}
+				else if (highlight.shape == SHAPE_CIRCLE)
+					trackedHighlight.setCircle(location[0], location[1], target.getWidth(), target.getHeight(), offset);
+				else
+					trackedHighlight.setRect(location[0], location[1], target.getWidth(), target.getHeight(), offset);
+				if (!trackedHighlight.sameAs(highlight))
+				{
+					addDirtyBounds(highlight);
+					highlight.set(trackedHighlight);
+					addDirtyBounds(highlight);
+					holeGridDirty = true;
+				}
+			}
+		}
+
+		@Override
+		protected void onSizeChanged(int width, int height, int oldWidth, int oldHeight)
+		{
+			super.onSizeChanged(width, height, oldWidth, oldHeight);
+			holeGridDirty = true;
+			// The first size is the one of the background
+			if (owner != null && oldWidth != 0 && oldHeight != 0)
+				owner.resizeOverlayLayout(this, width, height);
+		}
+
+		/**
+		 * @brief Add the bounds of an item with its border to the part to draw again.
+		 * @param highlight Surrounded item.
+		 */
+		private void addDirtyBounds(OverlayGeometry.Highlight highlight)
+		{
+			// One more pixel for the anti alias
+			highlight.getOuterBounds(owner.borderSize + 1, outerBounds);
+			dirtyRect.union(outerBounds[0], outerBounds[1], outerBounds[2], outerBounds[3]);
+		}
+
+		@Override
+		protected void dispatchDraw(Canvas canvas)
+		{
+			super.dispatchDraw(canvas);
+			if (metrics != null && metrics.firstFrameTime == 0)
+				metrics.firstFrameTime = System.nanoTime() - metrics.startTime;
+		}
+
+		/**
+		 * @brief Move the holes from other items to the items of this layout.
+		 * @param from Items displayed before this layout, copied.
+		 * @param duration Duration in milliseconds.
+		 * @details With an ARGB background bitmap, only the old and new bounds of each hole
+		 * are drawn again in the bitmap at each frame. Otherwise the background and the holes
+		 * are drawn directly, without a layer, at each frame until the end of the morph: the
+		 * background is hidden and displayed again at the end. The items and the parts to draw
+		 * again are allocated once and kept for the next morphs.
+		 */
+		void startMorph(ArrayList<OverlayGeometry.Highlight> from, long duration)
+		{
+			int count = Math.max(from.size(), highlights.size());
+			while (morphPool.size() < from.size() + count)
+				morphPool.add(new OverlayGeometry.Highlight());
+			morphFrom.clear();
+			for (int i = 0; i < from.size(); ++i)
+			{
+				OverlayGeometry.Highlight highlight = morphPool.get(i);
+				highlight.set(from.get(i));
+				morphFrom.add(highlight);
+			}
+			morphItems.clear();
+			for (int i = 0; i < count; ++i)
+				morphItems.add(morphPool.get(from.size() + i));
+			if (morphStartTime == 0)
+			{
+				morphInBitmap = bitmap != null && bitmap.getConfig() != Bitmap.Config.ALPHA_8;
+				morphDrawn = false;
+				if (!morphInBitmap)
+				{
+					morphBackground = getBackground();
+					setBackgroundToLayout(this, null);
+				}
+			}
+			morphDuration = duration * 1000000L;
+			morphStartTime = System.nanoTime();
+			setWillNotDraw(false);
+			invalidate();
+		}
+
+		/**
+		 * @brief Get the items drawn on the screen.
+		 * @return Items of the running morph, or items of the layout.
+		 */
+		ArrayList<OverlayGeometry.Highlight> getDisplayedHighlights()
+		{
+			return morphStartTime != 0 ? morphItems : highlights;
+		}
+
+		/**
+		 * @brief Compute the items of the morph for the current frame.
+		 * @return False if the morph is ended.
+		 */
+		private boolean updateMorph()
+		{
+			float fraction = (float)(System.nanoTime() - morphStartTime) / morphDuration;
+			if (fraction >= 1)
+				return false;
+			// Accelerate then decelerate
+			fraction = (float)(Math.cos((fraction + 1) * Math.PI) / 2) + 0.5f;
+			for (int i = 0; i < morphItems.size(); ++i)
+			{
+				OverlayGeometry.Highlight item = morphItems.get(i);
+				if (i < morphFrom.size() && i < highlights.size())
+					item.interpolate(morphFrom.get(i), highlights.get(i), fraction);
+				else if (i < highlights.size())
+					item.scale(highlights.get(i), fraction);
+				else
+					item.scale(morphFrom.get(i), 1 - fraction);
+			}
+			return true;
+		}
+
+		/**
+		 * @brief Display again the background at the end of the morph.
+		 */
+		private void endMorph()
+		{
+			morphStartTime = 0;
+			if (!morphInBitmap)
+			{
+				setBackgroundToLayout(this, morphBackground);
+				morphBackground = null;
+			}
+			setWillNotDraw(!direct);
+		}
+
+		/**
+		 * @brief Draw the current frame of the morph in the background bitmap.
+		 * @details The bitmap holds the items of this layout before the first frame, then
+		 * the items of the previous frame. For each item, only its old and new bounds are
+		 * drawn again, distant items do not redraw the space between them.
+		 */
+		private void drawMorphInBitmap()
+		{
+			morphRectCount = 0;
+			addMorphBounds(morphDrawn ? morphItems : highlights);
+			ArrayList<OverlayGeometry.Highlight> drawnHighlights = morphItems;
+			if (updateMorph())
+			{
+				morphDrawn = true;
+				invalidate();
+			}
+			else
+			{
+				endMorph();
+				drawnHighlights = highlights;
+			}
+			addMorphBounds(drawnHighlights);
+			if (!morphRect.isEmpty())
+			{
+				nextMorphRect().set(morphRect);
+				morphRect.setEmpty();
+			}
+			owner.applyStyleToRenderer();
+			owner.manager.renderer.renderRegions(owner.manager.bitmapCanvas, bitmap, getWidth(), getHeight(), owner.getBitmapScale(), drawnHighlights, morphRects, morphRectCount);
+		}
+
+		/**
+		 * @brief Add the bounds of items with their border to the parts of the morph to draw again.
+		 * @param items Surrounded items, the bounds of each one are added to the part of its index.
+		 */
+		private void addMorphBounds(ArrayList<OverlayGeometry.Highlight> items)
+		{
+			while (morphRectCount < items.size())
+				nextMorphRect();
+			for (int i = 0; i < items.size(); ++i)
+			{
+				// One more pixel for the anti alias
+				items.get(i).getOuterBounds(owner.borderSize + 1, outerBounds);
+				morphRects.get(i).union(outerBounds[0], outerBounds[1], outerBounds[2], outerBounds[3]);
+			}
+		}
+
+		/**
+		 * @brief Use one more part of the morph to draw again.
+		 * @return Empty part, allocated only the first time.
+		 */
+		private Rect nextMorphRect()
+		{
+			if (morphRectCount == morphRects.size())
+				morphRects.add(new Rect());
+			Rect rect = morphRects.get(morphRectCount++);
+			rect.setEmpty();
+			return rect;
+		}
+
+		@Override
+		public void draw(Canvas canvas)
+		{
+			// The bitmap is updated before the background is drawn
+			if (morphStartTime != 0 && morphInBitmap && owner != null && bitmap != null)
+				drawMorphInBitmap();
+			super.draw(canvas);
+		}
+
+		@Override
+		protected void onDraw(Canvas canvas)
+		{
+			if (morphStartTime != 0 && !morphInBitmap && owner != null)
+			{
+				ArrayList<OverlayGeometry.Highlight> drawnHighlights = morphItems;
+				if (updateMorph())
+					invalidate();
+				else
+				{
+					// This frame is drawn without the background, the next ones with it
+					endMorph();
+					drawnHighlights = highlights;
+				}
+				owner.drawOverlayDirect(canvas, drawnHighlights);
+			}
+			else if (direct && owner != null)
+				owner.drawOverlayDirect(canvas, highlights);
+			super.onDraw(canvas);
+		}
+	}
+}